@@ -0,0 +1,130 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2;
+
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.repository.UserRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Boots the application against its own in-memory H2 database, without the web server unless startServer is used,
+ * and with the dev profile's DEBUG/TRACE logging turned down so logging does not dominate the measurements.
+ */
+public final class BenchmarkContext {
+
+    private static final String[] DEFAULT_PROPERTIES = {
+            "spring.jpa.properties.hibernate.show_sql=false",
+            "logging.file.name=target/benchmark.log",
+            "logging.level.root=WARN",
+            "logging.level.org.springdoc=WARN",
+            "logging.level.org.springframework=WARN",
+            "logging.level.org.springframework.web=WARN",
+            "logging.level.org.springframework.security=WARN",
+            "logging.level.org.springframework.transaction=WARN",
+            "logging.level.org.springframework.boot.autoconfigure=WARN",
+            "logging.level.org.hibernate.SQL=WARN",
+            "logging.level.org.hibernate.engine.transaction=WARN",
+            "logging.level.org.hibernate.type=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "logging.level.org.hibernate.type.descriptor.sql.BasicTypeDescriptor=WARN",
+            "logging.level.com.zaxxer.hikari.HikariConfig=WARN",
+            "logging.level.com.zaxxer.hikari=WARN"
+    };
+
+    private BenchmarkContext() {
+        super();
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    // With the web server on a random port, see port(context)
+    public static ConfigurableApplicationContext startServer(String... properties) {
+        return run(WebApplicationType.SERVLET, Stream.concat(Stream.of(properties), Stream.of("server.port=0", "server.tomcat.accesslog.enabled=false"))
+                .toArray(String[]::new));
+    }
+
+    public static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType webApplicationType, String... properties) {
+        // Passed as command line arguments so they win over the profile specific properties files
+        boolean ownUrl = Stream.of(properties).anyMatch(property -> property.startsWith("spring.datasource.url="));
+        String[] args = Stream.concat(
+                Stream.of(DEFAULT_PROPERTIES),
+                Stream.concat(
+                        ownUrl ? Stream.empty() : Stream.of("spring.datasource.url=" + memoryUrl()),
+                        Stream.of(properties)))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    // A fresh in-memory database per context, so benchmarks never see each other's rows
+    public static String memoryUrl() {
+        return "jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    }
+
+    // Inserts generated users on top of the rows from import.sql
+    public static void seedUsers(ConfigurableApplicationContext context, int count) {
+        UserRepository repository = context.getBean(UserRepository.class);
+        List<User> batch = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batch.add(newUser(i));
+            if (batch.size() == 1000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+    }
+
+    // Rows shaped like newUser(i), generated by one INSERT ... SELECT where saveAll would dominate the setup
+    public static void bulkInsertUsers(ConfigurableApplicationContext context, int count) {
+        // The identity column fills user_id by itself, the sequence mode draws it from users_seq
+        boolean identity = "identity".equals(context.getEnvironment().getProperty("app.user.id-generation"));
+        context.getBean(JdbcTemplate.class).update(
+                "INSERT INTO users (" + (identity ? "" : "user_id, ") + "idempotency_key, user_name, email, password, "
+                        + "date_of_birth, date_of_leaving, postal_code, profile_image_object_name, profile_image_bucket, "
+                        + "created_by, created_date, updated_by, updated_date) "
+                        + "SELECT " + (identity ? "" : "NEXT VALUE FOR users_seq, ") + "'BENCH-' || (X - 1), 'bench.user' || (X - 1), 'bench.user' || (X - 1) || '@example.com', "
+                        + "'pass123', DATEADD(DAY, MOD(X, 14600), DATE '1970-01-01'), DATE '2060-12-31', 56000 + MOD(X - 1, 100), "
+                        + "CASE WHEN MOD(X - 1, 2) = 0 THEN 'user-' || (X - 1) || '-avatar.png' END, 'user-images', "
+                        + "'system', CURRENT_TIMESTAMP, 'system', CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, ?)", count);
+    }
+
+    public static User newUser(int i) {
+        User user = new User();
+        user.setIdempotencyKey("BENCH-" + i);
+        user.setUserName("bench.user" + i);
+        user.setEmail("bench.user" + i + "@example.com");
+        user.setPassword("pass123");
+        user.setDateOfBirth(LocalDate.of(1970 + i % 40, 1 + i % 12, 1 + i % 28));
+        user.setDateOfLeaving(LocalDate.of(2060, 12, 31));
+        user.setPostalCode(56000 + i % 100);
+        user.setProfileImageBucket("user-images");
+        user.setProfileImageObjectName(i % 2 == 0 ? "user-" + i + "-avatar.png" : null);
+        return user;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for MinIO that answers just enough of the S3 API for the client calls of UserService and
+ * OrphanImageReaper: bucket location, object PUT (after a fixed latency, as a real store would take), DELETE,
+ * multi-object delete and ListObjectsV2 in pages. Object bytes are read and discarded, only names and
+ * modification times are kept.
+ */
+public final class MinioStub implements AutoCloseable {
+
+    private static final byte[] LOCATION = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<LocationConstraint xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">us-east-1</LocationConstraint>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] DELETE_RESULT = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<DeleteResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"></DeleteResult>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final Pattern DELETE_KEY = Pattern.compile("<Key>(.*?)</Key>");
+
+    private static final DateTimeFormatter LAST_MODIFIED =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Duration putLatency;
+    // Per bucket, sorted by name as S3 lists them
+    private final Map<String, ConcurrentSkipListMap<String, Instant>> buckets = new ConcurrentHashMap<>();
+
+    private MinioStub(Duration putLatency) throws IOException {
+        this.putLatency = putLatency;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static MinioStub start(Duration putLatency) throws IOException {
+        return new MinioStub(putLatency);
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    // Adds an object directly, e.g. one that is older than a grace period
+    public void putObject(String bucket, String objectName, Instant lastModified) {
+        objects(bucket).put(objectName, lastModified);
+    }
+
+    public Set<String> objectNames(String bucket) {
+        return Set.copyOf(objects(bucket).keySet());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            byte[] content = "POST".equals(exchange.getRequestMethod()) ? body.readAllBytes() : new byte[0];
+            body.transferTo(OutputStream.nullOutputStream());
+            String query = exchange.getRequestURI().getRawQuery();
+            // /bucket/object name
+            String[] path = exchange.getRequestURI().getPath().substring(1).split("/", 2);
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> {
+                    Map<String, String> parameters = parameters(query);
+                    byte[] response = parameters.containsKey("location") ? LOCATION
+                            : "2".equals(parameters.get("list-type")) ? list(path[0], parameters)
+                            : new byte[0];
+                    exchange.getResponseHeaders().add("Content-Type", "application/xml");
+                    exchange.sendResponseHeaders(200, response.length == 0 ? -1 : response.length);
+                    exchange.getResponseBody().write(response);
+                }
+                case "PUT" -> {
+                    Thread.sleep(putLatency.toMillis());
+                    if (path.length == 2) {
+                        objects(path[0]).put(path[1], Instant.now());
+                    }
+                    exchange.getResponseHeaders().add("ETag", "\"d41d8cd98f00b204e9800998ecf8427e\"");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                case "DELETE" -> {
+                    if (path.length == 2) {
+                        objects(path[0]).remove(path[1]);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                case "POST" -> {
+                    // Multi-object delete, every key succeeds
+                    Matcher key = DELETE_KEY.matcher(new String(content, StandardCharsets.UTF_8));
+                    while (key.find()) {
+                        objects(path[0]).remove(unescape(key.group(1)));
+                    }
+                    byte[] response = DELETE_RESULT;
+                    exchange.getResponseHeaders().add("Content-Type", "application/xml");
+                    exchange.sendResponseHeaders(200, response.length);
+                    exchange.getResponseBody().write(response);
+                }
+                default -> exchange.sendResponseHeaders(200, -1);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One page of names after the continuation token, which is the last name of the previous page
+    private byte[] list(String bucket, Map<String, String> parameters) {
+        int maxKeys = Integer.parseInt(parameters.getOrDefault("max-keys", "1000"));
+        String token = parameters.get("continuation-token");
+        NavigableMap<String, Instant> objects = token == null ? objects(bucket)
+                : objects(bucket).tailMap(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8), false);
+        StringBuilder contents = new StringBuilder();
+        String last = null;
+        int count = 0;
+        for (Map.Entry<String, Instant> object : objects.entrySet()) {
+            if (count == maxKeys) {
+                break;
+            }
+            contents.append("<Contents><Key>").append(escape(object.getKey())).append("</Key><LastModified>")
+                    .append(LAST_MODIFIED.format(object.getValue()))
+                    .append("</LastModified><ETag>&quot;d41d8cd98f00b204e9800998ecf8427e&quot;</ETag>")
+                    .append("<Size>0</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            last = object.getKey();
+            count++;
+        }
+        boolean truncated = last != null && objects.higherKey(last) != null;
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+                + "<Name>" + bucket + "</Name><Prefix></Prefix><KeyCount>" + count + "</KeyCount>"
+                + "<MaxKeys>" + maxKeys + "</MaxKeys><IsTruncated>" + truncated + "</IsTruncated>"
+                + (truncated ? "<NextContinuationToken>"
+                + Base64.getUrlEncoder().encodeToString(last.getBytes(StandardCharsets.UTF_8))
+                + "</NextContinuationToken>" : "")
+                + contents + "</ListBucketResult>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private ConcurrentSkipListMap<String, Instant> objects(String bucket) {
+        return buckets.computeIfAbsent(bucket, name -> new ConcurrentSkipListMap<>());
+    }
+
+    private static Map<String, String> parameters(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                String[] pair = parameter.split("=", 2);
+                parameters.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                        pair.length == 2 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        return parameters;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static String unescape(String text) {
+        return text.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&apos;", "'")
+                .replace("&amp;", "&");
+    }
+}
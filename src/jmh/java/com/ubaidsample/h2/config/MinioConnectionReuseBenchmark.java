@@ -0,0 +1,70 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.config;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.MinioStub;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Concurrent 16KB uploads through the configured MinioClient, with pooled connections vs. a new connection per call,
+// and with Nagle's algorithm on vs. off, which decides whether a reused connection waits on delayed ACKs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 8, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class MinioConnectionReuseBenchmark {
+
+    private static final byte[] IMAGE = new byte[16 * 1024];
+
+    @Param({"pooled", "unpooled"})
+    private String connections;
+
+    @Param({"true", "false"})
+    private boolean tcpNoDelay;
+
+    private MinioStub minio;
+    private ConfigurableApplicationContext context;
+    private MinioClient minioClient;
+
+    @Setup
+    public void setUp() throws Exception {
+        minio = MinioStub.start(Duration.ZERO);
+        // Without idle connections to keep, OkHttp closes each one as soon as its call is done
+        context = BenchmarkContext.start("minio.url=" + minio.url(),
+                "minio.http.max-idle-connections=" + ("pooled".equals(connections) ? 50 : 0),
+                "minio.http.tcp-no-delay=" + tcpNoDelay);
+        minioClient = context.getBean(MinioClient.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        minio.close();
+    }
+
+    @Benchmark
+    public ObjectWriteResponse putObject() throws Exception {
+        return minioClient.putObject(PutObjectArgs.builder()
+                .bucket("user-images")
+                .object("benchmark.png")
+                .stream(new ByteArrayInputStream(IMAGE), IMAGE.length, -1)
+                .contentType("image/png")
+                .build());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.controller;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.MinioStub;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload-and-read load over HTTP with many concurrent clients: each operation streams an avatar to a user,
+ * which goes on to a MinIO stand-in with a fixed PUT latency, then reads the user and its image URL back.
+ * Requests and MinIO calls on platform threads vs. virtual threads; the virtual mode needs a Java 21 runtime,
+ * e.g. JAVA_HOME=/path/to/jdk-21 mvn -Pjava21,benchmarks test-compile exec:exec -Djmh.args="UploadAndRead".
+ * Peak thread count and committed memory are printed when each trial ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(400)
+@Fork(value = 1, jvmArgs = {"-Xmx2g", "-Djdk.tracePinnedThreads=short"})
+public class UploadAndReadBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int READS_PER_UPLOAD = 4;
+    private static final Duration PUT_LATENCY = Duration.ofMillis(50);
+
+    @Param({"platform", "virtual"})
+    private String threading;
+
+    private MinioStub minio;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private byte[] image;
+
+    @Setup
+    public void setUp() throws IOException {
+        minio = MinioStub.start(PUT_LATENCY);
+        context = BenchmarkContext.startServer("minio.url=" + minio.url(),
+                "spring.threads.virtual.enabled=" + "virtual".equals(threading));
+        BenchmarkContext.seedUsers(context, USERS);
+        baseUrl = "http://localhost:" + BenchmarkContext.port(context) + "/sb-h2-image-upload-minio/api/v1/user/";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        // A real PNG, its header is read on the streaming path and the noise keeps it at about 16KB
+        image = noisePng(74, 74);
+    }
+
+    @TearDown
+    public void tearDown() {
+        long committed = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.NON_HEAP)
+                .mapToLong(pool -> pool.getUsage().getCommitted())
+                .sum() + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted();
+        System.out.printf("%n[%s] peak threads: %d, committed heap+non-heap: %d MB%n", threading,
+                ManagementFactory.getThreadMXBean().getPeakThreadCount(), committed / (1024 * 1024));
+        context.close();
+        minio.close();
+    }
+
+    @Benchmark
+    public int uploadAndRead() throws IOException, InterruptedException {
+        // Seeded users follow the four rows of import.sql
+        long id = 5 + ThreadLocalRandom.current().nextInt(USERS);
+        int failures = send(HttpRequest.newBuilder(URI.create(baseUrl + id + "/upload-image/stream?fileName=avatar.png"))
+                .header("Content-Type", "image/png")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(image)));
+        for (int i = 0; i < READS_PER_UPLOAD; i++) {
+            String path = i % 2 == 0 ? id + "/image" : String.valueOf(id);
+            failures += send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET());
+        }
+        if (failures > 0) {
+            throw new IllegalStateException(failures + " failed requests for user " + id);
+        }
+        return failures;
+    }
+
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode() == 200 ? 0 : 1;
+    }
+
+    private static byte[] noisePng(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.common;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.dto.request.FilterRequestDTO;
+import com.ubaidsample.h2.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Criteria predicate construction only, no SQL is rendered or executed
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenericSpecificationBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private CriteriaBuilder cb;
+    private List<FilterRequestDTO> filters;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        cb = entityManager.getCriteriaBuilder();
+        filters = List.of(
+                new FilterRequestDTO("postalCode", "eq", 56001),
+                new FilterRequestDTO("dateOfBirth", "gte", "1995-01-01"),
+                new FilterRequestDTO("userName", "in", List.of("john.doe", "alice.wonder")),
+                new FilterRequestDTO("auditHistoryDTO.deleted", "eq", false));
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        context.close();
+    }
+
+    @Benchmark
+    public Predicate filters() {
+        return toPredicate(new GenericSpecification<>(null, filters));
+    }
+
+    @Benchmark
+    public Predicate search() {
+        return toPredicate(new GenericSpecification<>("john", null));
+    }
+
+    @Benchmark
+    public Predicate filtersAndSearch() {
+        return toPredicate(new GenericSpecification<>("john", filters));
+    }
+
+    private Predicate toPredicate(GenericSpecification<User> spec) {
+        CriteriaQuery<User> query = cb.createQuery(User.class);
+        Root<User> root = query.from(User.class);
+        return spec.toPredicate(root, query, cb);
+    }
+}
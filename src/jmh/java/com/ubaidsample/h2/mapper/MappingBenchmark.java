@@ -0,0 +1,66 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.mapper;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.dto.common.AuditHistoryDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import org.modelmapper.Conditions;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.convention.MatchingStrategies;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// User -> UserResponseDTO through ModelMapper, strict and strict skipping nulls as the application mapped before,
+// and through the generated UserMapper
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    private ModelMapper modelMapper;
+    private ModelMapper mapperUtil;
+    private UserMapper userMapper;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
+        mapperUtil = new ModelMapper();
+        mapperUtil.getConfiguration()
+                .setMatchingStrategy(MatchingStrategies.STRICT)
+                .setPropertyCondition(Conditions.isNotNull())
+                .setAmbiguityIgnored(true);
+        userMapper = new UserMapperImpl();
+        user = BenchmarkContext.newUser(1);
+        user.setUserId(1L);
+        user.setAuditHistoryDTO(new AuditHistoryDTO("system", LocalDateTime.now(), "system", LocalDateTime.now(), false, null));
+    }
+
+    @Benchmark
+    public UserResponseDTO modelMapper() {
+        return modelMapper.map(user, UserResponseDTO.class);
+    }
+
+    @Benchmark
+    public UserResponseDTO mapperUtil() {
+        return mapperUtil.map(user, UserResponseDTO.class);
+    }
+
+    @Benchmark
+    public UserResponseDTO generatedMapper() {
+        return userMapper.toResponse(user);
+    }
+}
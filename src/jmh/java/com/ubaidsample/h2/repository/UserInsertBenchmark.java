@@ -0,0 +1,66 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.repository;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.entity.User;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Users inserted per second through saveAll, identity column (no batching) vs. pooled sequence with JDBC batching.
+// The database is reached over H2's TCP server, so every statement pays a real round trip as it would in production.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(UserInsertBenchmark.USERS_PER_TRANSACTION)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class UserInsertBenchmark {
+
+    static final int USERS_PER_TRANSACTION = 500;
+
+    @Param({"identity", "sequence"})
+    private String idGeneration;
+
+    private Server server;
+    private ConfigurableApplicationContext context;
+    private UserRepository repository;
+    private int next;
+
+    @Setup
+    public void setUp() throws SQLException {
+        // Local connections only, the in-memory database is created by the first connection
+        server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        String url = BenchmarkContext.memoryUrl().replace("jdbc:h2:mem:", "jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:");
+        context = BenchmarkContext.start("spring.datasource.url=" + url,
+                "app.user.id-generation=" + idGeneration, "app.search.full-text.enabled=false");
+        repository = context.getBean(UserRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public List<User> saveAll() {
+        List<User> users = new ArrayList<>(USERS_PER_TRANSACTION);
+        for (int i = 0; i < USERS_PER_TRANSACTION; i++) {
+            users.add(BenchmarkContext.newUser(next++));
+        }
+        return repository.saveAll(users);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.dto.request.FilterRequestDTO;
+import com.ubaidsample.h2.dto.request.PageRequestDTO;
+import com.ubaidsample.h2.dto.response.PageResponseDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.mapper.UserMapper;
+import com.ubaidsample.h2.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// A dashboard style search repeated with new values: Criteria tree per search vs. the compiled query of its shape
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledSearchBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PaginationService<User, UserResponseDTO> specification;
+    private PaginationService<User, UserResponseDTO> compiled;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seedUsers(context, 1000);
+        UserRepository repository = context.getBean(UserRepository.class);
+        UserMapper mapper = context.getBean(UserMapper.class);
+        specification = new PaginationService<>(repository, mapper::toResponse, User.class, null, null, null, null);
+        compiled = new PaginationService<>(repository, mapper::toResponse, User.class, null, null,
+                context.getBean(SearchQueryCompiler.class), null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> specification() {
+        return specification.getPaginatedData(dashboardSearch());
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> compiled() {
+        return compiled.getPaginatedData(dashboardSearch());
+    }
+
+    // Same fields and operators every time, only the values change
+    private static PageRequestDTO dashboardSearch() {
+        int postalCode = 56000 + ThreadLocalRandom.current().nextInt(100);
+        PageRequestDTO pageRequest = new PageRequestDTO();
+        pageRequest.setSortBy("dateOfBirth");
+        pageRequest.setSortDir("desc");
+        pageRequest.setWithTotal(false);
+        pageRequest.setFilters(List.of(
+                new FilterRequestDTO("postalCode", "in", List.of(postalCode, postalCode + 1)),
+                new FilterRequestDTO("dateOfBirth", "gte", "1975-01-01"),
+                new FilterRequestDTO("auditHistoryDTO.deleted", "eq", false)));
+        return pageRequest;
+    }
+}
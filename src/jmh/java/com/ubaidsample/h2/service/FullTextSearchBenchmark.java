@@ -0,0 +1,80 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.dto.request.PageRequestDTO;
+import com.ubaidsample.h2.dto.response.PageResponseDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.mapper.UserMapper;
+import com.ubaidsample.h2.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// Free-text search with LIKE '%term%' over the @Searchable columns against the in-memory index lookup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FullTextSearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private UserSearchIndex searchIndex;
+    private PaginationService<User, UserResponseDTO> likeSearch;
+    private PaginationService<User, UserResponseDTO> indexedSearch;
+    private String selectiveTerm;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.bulkInsertUsers(context, rows);
+        searchIndex = context.getBean(UserSearchIndex.class);
+        searchIndex.rebuild();
+        UserRepository repository = context.getBean(UserRepository.class);
+        UserMapper mapper = context.getBean(UserMapper.class);
+        likeSearch = new PaginationService<>(repository, mapper::toResponse, User.class, null, null, null, null);
+        indexedSearch = new PaginationService<>(repository, mapper::toResponse, User.class, null, searchIndex::search, null, null);
+        // Matches a handful of users, e.g. user12345 and user123450..user123459
+        selectiveTerm = "user" + (rows / 8);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> like() {
+        return likeSearch.getPaginatedData(pageRequest(selectiveTerm));
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> indexed() {
+        return indexedSearch.getPaginatedData(pageRequest(selectiveTerm));
+    }
+
+    @Benchmark
+    public Object indexLookupOnly() {
+        return searchIndex.search(selectiveTerm);
+    }
+
+    private static PageRequestDTO pageRequest(String search) {
+        PageRequestDTO pageRequest = new PageRequestDTO();
+        pageRequest.setSortBy("userId");
+        pageRequest.setSearch(search);
+        return pageRequest;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.MediaType;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost per upload of decoding a 1600x1200 JPEG once and scaling and encoding every default rendition.
+ * The bytes of the original and of each rendition, i.e. what a client downloads per size, are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageRenditionBenchmark {
+
+    private static final Map<String, Integer> SIZES = Map.of("thumb", 48, "small", 160, "medium", 480);
+
+    private ImageRenditionService renditionService;
+    private byte[] original;
+
+    @Setup
+    public void setUp() throws IOException {
+        renditionService = new ImageRenditionService(null, null, null, new SimpleMeterRegistry(), true,
+                "thumb:48,small:160,medium:480", 0.85f, 25_000_000);
+        original = photo(1600, 1200);
+        System.out.printf("%noriginal: %d bytes%n", original.length);
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+        for (Map.Entry<String, Integer> size : SIZES.entrySet()) {
+            byte[] rendition = renditionService.encode(ImageRenditionService.scale(source, size.getValue()),
+                    MediaType.IMAGE_JPEG_VALUE);
+            System.out.printf("%s: %d bytes (%.1fx smaller)%n", size.getKey(), rendition.length,
+                    (double) original.length / rendition.length);
+        }
+    }
+
+    @Benchmark
+    public void decodeAndRenderAll(Blackhole blackhole) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+        for (int maxEdge : SIZES.values()) {
+            blackhole.consume(renditionService.encode(ImageRenditionService.scale(source, maxEdge),
+                    MediaType.IMAGE_JPEG_VALUE));
+        }
+    }
+
+    // Soft overlapping shapes with noise, compresses about like a photo rather than a flat test pattern
+    private static byte[] photo(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(42);
+        for (int i = 0; i < 600; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(300), 20 + random.nextInt(300));
+        }
+        graphics.dispose();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(17) - 8;
+                int rgb = image.getRGB(x, y);
+                int r = Math.min(255, Math.max(0, ((rgb >> 16) & 0xFF) + noise));
+                int g = Math.min(255, Math.max(0, ((rgb >> 8) & 0xFF) + noise));
+                int b = Math.min(255, Math.max(0, (rgb & 0xFF) + noise));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.MinioStub;
+import com.ubaidsample.h2.entity.ImageObject;
+import com.ubaidsample.h2.repository.ImageObjectRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full reaper pass, unpaced, over a bucket of 10,004 user-{id}-... objects (every other one referenced) and
+ * 2,000 sha256-... objects (every other one with a referenced image_objects row), all older than the grace period,
+ * served by the MinIO stand-in. The bucket is filled again before every pass; the first pass checks that exactly
+ * the unreferenced half was deleted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+// The stand-in writes headers and body separately, without TCP_NODELAY every listing page waits on a delayed ACK
+@Fork(value = 1, jvmArgs = "-Dsun.net.httpserver.nodelay=true")
+public class OrphanImageReaperBenchmark {
+
+    private static final String BUCKET = "user-images";
+    private static final int USERS = 10_000;
+    private static final int CONTENT_OBJECTS = 2_000;
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private MinioStub minio;
+    private ConfigurableApplicationContext context;
+    private OrphanImageReaper reaper;
+    private int userObjects;
+    private boolean checked;
+
+    @Setup
+    public void setUp() throws IOException {
+        minio = MinioStub.start(Duration.ZERO);
+        context = BenchmarkContext.start("minio.url=" + minio.url(),
+                "app.image.reaper.enabled=false",
+                "app.image.reaper.batch-size=" + batchSize,
+                "app.image.reaper.max-deletes-per-second=0",
+                "app.image.reaper.max-deletes-per-run=1000000");
+        BenchmarkContext.seedUsers(context, USERS);
+        // Even ids reference user-{id}-avatar.png, odd ids nothing
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("UPDATE users SET profile_image_object_name = CASE WHEN MOD(user_id, 2) = 0 "
+                + "THEN 'user-' || user_id || '-avatar.png' END, profile_image_renditions = NULL");
+        userObjects = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+        List<ImageObject> rows = new ArrayList<>();
+        for (int i = 0; i < CONTENT_OBJECTS; i += 2) {
+            rows.add(new ImageObject(contentObjectName(i), BUCKET, 1, 0, true, Map.of(), LocalDateTime.now(), null));
+        }
+        context.getBean(ImageObjectRepository.class).saveAll(rows);
+        reaper = context.getBean(OrphanImageReaper.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void fillBucket() {
+        Instant old = Instant.now().minus(Duration.ofDays(7));
+        for (int id = 1; id <= userObjects; id++) {
+            minio.putObject(BUCKET, "user-" + id + "-avatar.png", old);
+        }
+        for (int i = 0; i < CONTENT_OBJECTS; i++) {
+            minio.putObject(BUCKET, contentObjectName(i), old);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkBucket() {
+        if (checked) {
+            return;
+        }
+        checked = true;
+        int remaining = minio.objectNames(BUCKET).size();
+        int expected = userObjects / 2 + CONTENT_OBJECTS / 2;
+        System.out.printf("%n%d of %d objects left, %d expected%n", remaining, userObjects + CONTENT_OBJECTS, expected);
+        if (remaining != expected) {
+            throw new IllegalStateException("Reaper left " + remaining + " objects, expected " + expected);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        minio.close();
+    }
+
+    @Benchmark
+    public OrphanImageReaper.ReapResult reap() {
+        return reaper.reap();
+    }
+
+    private static String contentObjectName(int i) {
+        return "sha256-" + HexFormat.of().toHexDigits((long) i).repeat(4) + ".png";
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.dto.common.KeysetCursor;
+import com.ubaidsample.h2.dto.request.FilterRequestDTO;
+import com.ubaidsample.h2.dto.request.PageRequestDTO;
+import com.ubaidsample.h2.dto.response.PageResponseDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.mapper.UserMapper;
+import com.ubaidsample.h2.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// End-to-end search through PaginationService against the in-memory H2 database
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginationBenchmark {
+
+    @Param({"1000", "10000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private PaginationService<User, UserResponseDTO> paginationService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seedUsers(context, rows);
+        paginationService = new PaginationService<>(context.getBean(UserRepository.class),
+                context.getBean(UserMapper.class)::toResponse, User.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> firstPage() {
+        return paginationService.getPaginatedData(pageRequest(0, null, null));
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> deepPage() {
+        return paginationService.getPaginatedData(pageRequest(rows / 20, null, null));
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> keysetDeepPage() {
+        PageRequestDTO pageRequest = pageRequest(0, null, null);
+        pageRequest.setAfter(KeysetCursor.of("userId", rows / 2, rows / 2).encode());
+        return paginationService.getPaginatedData(pageRequest);
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> deepPageWithoutTotal() {
+        PageRequestDTO pageRequest = pageRequest(rows / 20, null, null);
+        pageRequest.setWithTotal(false);
+        return paginationService.getPaginatedData(pageRequest);
+    }
+
+    @Benchmark
+    public PageResponseDTO<UserResponseDTO> filteredSearch() {
+        return paginationService.getPaginatedData(pageRequest(0, "user1",
+                List.of(new FilterRequestDTO("postalCode", "gte", 56050))));
+    }
+
+    private static PageRequestDTO pageRequest(int page, String search, List<FilterRequestDTO> filters) {
+        PageRequestDTO pageRequest = new PageRequestDTO();
+        pageRequest.setPage(page);
+        pageRequest.setSortBy("userId");
+        pageRequest.setSearch(search);
+        pageRequest.setFilters(filters);
+        return pageRequest;
+    }
+}
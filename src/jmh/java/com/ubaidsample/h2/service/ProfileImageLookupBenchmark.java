@@ -0,0 +1,58 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.BenchmarkContext;
+import com.ubaidsample.h2.dto.common.ProfileImageDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Image lookup before and after the projection, compare gc.alloc.rate.norm for the per-request allocation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileImageLookupBenchmark {
+
+    private static final Long USER_ID = 10L;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserRepository repository;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seedUsers(context, 100);
+        userService = context.getBean(UserService.class);
+        repository = context.getBean(UserRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String entityAndMapping() {
+        UserResponseDTO response = userService.findById(USER_ID);
+        return response.getProfileImageObjectName();
+    }
+
+    @Benchmark
+    public Optional<ProfileImageDTO> projection() {
+        return repository.findProfileImageByUserId(USER_ID);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks run on every upload before any MinIO I/O, on a 1600x1200 JPEG carrying a 16KB EXIF-sized APP1 segment.
+ * legacy* are the list split, extension regex and signature copy the upload path used before the sniffing validator,
+ * which also reads the dimensions; imageIoHeader gets them through an ImageIO reader instead of walking the segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UploadValidationBenchmark {
+
+    private static final String CONTENT_TYPE = "image/jpeg";
+    private static final String FILE_NAME = "My Holiday Avatar.JPG";
+    private static final String ALLOWED_TYPES = "image/jpeg,image/png";
+
+    private ImageUploadValidator validator;
+    private byte[] image;
+
+    @Setup
+    public void setUp() throws IOException {
+        validator = new ImageUploadValidator(ALLOWED_TYPES, 25_000_000, DataSize.ofKilobytes(256));
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB), "jpg", encoded);
+        byte[] jpeg = encoded.toByteArray();
+        // SOI, then an APP1 segment where cameras put EXIF, then the rest of the encoded file
+        int exifLength = 16 * 1024;
+        image = new byte[jpeg.length + exifLength + 4];
+        image[0] = (byte) 0xFF;
+        image[1] = (byte) 0xD8;
+        image[2] = (byte) 0xFF;
+        image[3] = (byte) 0xE1;
+        image[4] = (byte) ((exifLength + 2) >> 8);
+        image[5] = (byte) (exifLength + 2);
+        System.arraycopy(jpeg, 2, image, exifLength + 6, jpeg.length - 2);
+        System.out.printf("%nsniffed: %s%n", validator.inspect(new ByteArrayInputStream(image), CONTENT_TYPE));
+    }
+
+    @Benchmark
+    public void legacyTypeAndName(Blackhole blackhole) {
+        List<String> allowed = List.of(ALLOWED_TYPES.split(","));
+        blackhole.consume(allowed.contains(CONTENT_TYPE));
+        blackhole.consume(FILE_NAME.toLowerCase().matches(".*\\.(jpg|jpeg|png)$"));
+    }
+
+    @Benchmark
+    public void typeAndName() {
+        validator.validateContentType(CONTENT_TYPE);
+        validator.validateFileName(FILE_NAME);
+    }
+
+    @Benchmark
+    public void legacyChecks(Blackhole blackhole) {
+        legacyTypeAndName(blackhole);
+        byte[] signature = Arrays.copyOf(image, 8);
+        blackhole.consume((signature[0] & 0xFF) == 0xFF && (signature[1] & 0xFF) == 0xD8);
+    }
+
+    @Benchmark
+    public ImageUploadValidator.ImageHeader sniffingValidator() throws IOException {
+        validator.validateContentType(CONTENT_TYPE);
+        validator.validateFileName(FILE_NAME);
+        return validator.inspect(new ByteArrayInputStream(image), CONTENT_TYPE);
+    }
+
+    @Benchmark
+    public long imageIoHeader() throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Filter value conversion as done for every filter of every search request
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityUtilBenchmark {
+
+    private final Object integerValue = 56001;
+    private final Object dateValue = "1995-01-01";
+    private final Object stringValue = "john.doe";
+    private final Object listValue = List.of("56001", "56002", "56003");
+
+    @Benchmark
+    public Object convertInteger() {
+        return EntityUtil.convertValue(Integer.class, integerValue);
+    }
+
+    @Benchmark
+    public Object convertLocalDate() {
+        return EntityUtil.convertValue(LocalDate.class, dateValue);
+    }
+
+    @Benchmark
+    public Object convertString() {
+        return EntityUtil.convertValue(String.class, stringValue);
+    }
+
+    @Benchmark
+    public Object convertCollection() {
+        return EntityUtil.convertValue(Integer.class, listValue);
+    }
+}
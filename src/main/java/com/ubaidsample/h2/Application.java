@@ -16,6 +16,8 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.event.EventListener;
 
+import java.util.Arrays;
+
 @Slf4j
 @SpringBootApplication
 public class Application {
@@ -7,7 +7,89 @@
 
 package com.ubaidsample.h2.config;
 
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.mapper.UserMapper;
+import com.ubaidsample.h2.repository.UserRepository;
+import com.ubaidsample.h2.service.PaginationService;
+import com.ubaidsample.h2.service.SearchCountCache;
+import com.ubaidsample.h2.service.SearchQueryCompiler;
+import com.ubaidsample.h2.service.UserSearchIndex;
+import com.ubaidsample.h2.util.EntityMetadata;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
-public class AppConfig {}
\ No newline at end of file
+@EnableScheduling
+public class AppConfig {
+
+    // Bounded pool for asynchronous profile image uploads, a full queue rejects instead of piling up work
+    @Bean(name = "uploadExecutor")
+    public TaskExecutor uploadExecutor(
+            Environment environment,
+            @Value("${app.upload.async.core-size:8}") int coreSize,
+            @Value("${app.upload.async.max-size:16}") int maxSize,
+            @Value("${app.upload.async.queue-capacity:200}") int queueCapacity) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            // A virtual thread per upload, the same number of uploads in progress or waiting is allowed as with the pool
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("upload-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(maxSize + queueCapacity);
+            executor.setRejectTasksWhenLimitReached(true);
+            executor.setTaskTerminationTimeout(30_000);
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("upload-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // Bounded pool for encoding image renditions, CPU-bound work so it stays on platform threads in virtual mode as well
+    @Bean(name = "renditionExecutor")
+    public TaskExecutor renditionExecutor(
+            @Value("${app.image.renditions.pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int poolSize,
+            @Value("${app.image.renditions.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("rendition-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // One PaginationService per entity, shared by all search requests
+    @Bean
+    public PaginationService<User, UserResponseDTO> userPaginationService(UserRepository repository, UserMapper userMapper,
+                                                                          SearchCountCache searchCountCache,
+                                                                          UserSearchIndex userSearchIndex,
+                                                                          SearchQueryCompiler searchQueryCompiler,
+                                                                          MeterRegistry meterRegistry) {
+        return new PaginationService<>(repository, userMapper::toResponse, User.class, searchCountCache,
+                userSearchIndex::search, searchQueryCompiler, meterRegistry);
+    }
+
+    // Resolves the reflective metadata of every entity at startup instead of on the first search
+    @EventListener(ApplicationReadyEvent.class)
+    public void resolveEntityMetadata(ApplicationReadyEvent event) {
+        event.getApplicationContext().getBean(EntityManagerFactory.class).getMetamodel().getEntities()
+                .forEach(entityType -> EntityMetadata.of(entityType.getJavaType()));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Regions of Hibernate's second-level and query cache, kept in Caffeine through its JCache provider.
+ * Every region is created here from app.cache.* and Hibernate refuses to start on a region it does not find.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    public static final String USER_REGION = "users";
+
+    // Own cache manager per application context, the benchmarks and tests start several in one JVM
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${app.cache.user.max-size:10000}") long userMaxSize,
+            @Value("${app.cache.user.expiry:after-write}") String userExpiry,
+            @Value("${app.cache.user.ttl:10m}") Duration userTtl,
+            @Value("${app.cache.user-query.max-size:1000}") long queryMaxSize,
+            @Value("${app.cache.user-query.expiry:after-write}") String queryExpiry,
+            @Value("${app.cache.user-query.ttl:5m}") Duration queryTtl) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(USER_REGION, region(userMaxSize, userExpiry, userTtl));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                region(queryMaxSize, queryExpiry, queryTtl));
+        // Last change per table, cached query results are checked against it, so it is never evicted
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    // Size bound evicts by Caffeine's frequency and recency policy, expiry is after-write or after-access
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, String expiry, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        OptionalLong nanos = OptionalLong.of(ttl.toNanos());
+        switch (expiry) {
+            case "after-write" -> configuration.setExpireAfterWrite(nanos);
+            case "after-access" -> configuration.setExpireAfterAccess(nanos);
+            default -> throw new IllegalArgumentException("app.cache expiry must be after-write or after-access: " + expiry);
+        }
+        return configuration;
+    }
+}
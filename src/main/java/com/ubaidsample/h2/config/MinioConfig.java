@@ -7,10 +7,29 @@
 
 package com.ubaidsample.h2.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.okhttp3.OkHttpConnectionPoolMetrics;
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
 
 @Configuration
 public class MinioConfig {
@@ -24,11 +43,103 @@ public class MinioConfig {
     @Value("${minio.secret-key}")
     private String secretKey;
 
+    @Value("${minio.http.max-idle-connections:50}")
+    private int maxIdleConnections;
+
+    @Value("${minio.http.keep-alive:5m}")
+    private Duration keepAlive;
+
+    // Every request thread may be waiting on MinIO at once, OkHttp's own default is 5 per host
+    @Value("${minio.http.max-requests:${server.tomcat.threads.max:200}}")
+    private int maxRequests;
+
+    @Value("${minio.http.max-requests-per-host:${server.tomcat.threads.max:200}}")
+    private int maxRequestsPerHost;
+
+    @Value("${minio.http.connect-timeout:10s}")
+    private Duration connectTimeout;
+
+    @Value("${minio.http.read-timeout:5m}")
+    private Duration readTimeout;
+
+    @Value("${minio.http.write-timeout:5m}")
+    private Duration writeTimeout;
+
+    @Value("${minio.http.tcp-no-delay:true}")
+    private boolean tcpNoDelay;
+
+    @Value("${minio.http.http2-enabled:false}")
+    private boolean http2Enabled;
+
+    @Value("${minio.http.retry-on-connection-failure:true}")
+    private boolean retryOnConnectionFailure;
+
+    @Value("${minio.http.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${minio.http.retry-backoff:100ms}")
+    private Duration retryBackoff;
+
+    // One client, and so one connection pool and dispatcher, for every MinIO call of the application
+    @Bean
+    public OkHttpClient minioHttpClient(Environment environment, MeterRegistry meterRegistry) {
+        // The blocking client waits on OkHttp calls that run on the dispatcher, so in virtual mode those get virtual threads too
+        Dispatcher dispatcher = Threading.VIRTUAL.isActive(environment)
+                ? new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                        new SynchronousQueue<>(), new VirtualThreadTaskExecutor("minio-").getVirtualThreadFactory()))
+                : new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        ConnectionPool connectionPool = new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        bindMetrics(meterRegistry, dispatcher, connectionPool);
+        // MinIO's defaults first, they pick up extra CA certificates from SSL_CERT_FILE
+        OkHttpClient.Builder builder = HttpUtils.newDefaultHttpClient(connectTimeout.toMillis(), writeTimeout.toMillis(),
+                        readTimeout.toMillis())
+                .newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .protocols(protocols())
+                .retryOnConnectionFailure(retryOnConnectionFailure)
+                .addInterceptor(new MinioRetryInterceptor(maxRetries, retryBackoff));
+        if (tcpNoDelay) {
+            // TLS sockets are layered over these, so https endpoints get it as well
+            builder.socketFactory(new NoDelaySocketFactory());
+        }
+        return builder.build();
+    }
+
     @Bean
-    public MinioClient minioClient() {
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         return MinioClient.builder()
                 .endpoint(minioUrl)
                 .credentials(accessKey, secretKey)
+                .httpClient(minioHttpClient)
                 .build();
     }
-}
\ No newline at end of file
+
+    // HTTP/2 is negotiated over TLS, a plain http endpoint has to speak it without negotiation (h2c)
+    private List<Protocol> protocols() {
+        if (!http2Enabled) {
+            return List.of(Protocol.HTTP_1_1);
+        }
+        return minioUrl.startsWith("https:")
+                ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : List.of(Protocol.H2_PRIOR_KNOWLEDGE);
+    }
+
+    // okhttp.pool.connection.count{state=active|idle}, okhttp.pool.connection.limit and minio.http.calls{state}
+    private void bindMetrics(MeterRegistry meterRegistry, Dispatcher dispatcher, ConnectionPool connectionPool) {
+        new OkHttpConnectionPoolMetrics(connectionPool, "okhttp.pool", Tags.of("client", "minio"), maxIdleConnections)
+                .bindTo(meterRegistry);
+        dispatcherGauge(meterRegistry, dispatcher, "running", Dispatcher::runningCallsCount);
+        dispatcherGauge(meterRegistry, dispatcher, "queued", Dispatcher::queuedCallsCount);
+    }
+
+    private static void dispatcherGauge(MeterRegistry meterRegistry, Dispatcher dispatcher, String state,
+                                        ToDoubleFunction<Dispatcher> calls) {
+        Gauge.builder("minio.http.calls", dispatcher, calls)
+                .description("MinIO HTTP calls on the OkHttp dispatcher, queued ones wait for a free request slot")
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+}
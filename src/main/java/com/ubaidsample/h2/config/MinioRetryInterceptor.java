@@ -0,0 +1,73 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.config;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Retries MinIO calls that failed on I/O or with a 503, with a doubling backoff.
+ * Only idempotent calls without a body are retried, an upload stream cannot be sent twice.
+ */
+@Slf4j
+class MinioRetryInterceptor implements Interceptor {
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "DELETE");
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final int maxRetries;
+    private final Duration backoff;
+
+    MinioRetryInterceptor(int maxRetries, Duration backoff) {
+        this.maxRetries = maxRetries;
+        this.backoff = backoff;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (maxRetries <= 0 || !IDEMPOTENT_METHODS.contains(request.method())) {
+            return chain.proceed(request);
+        }
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Response response = chain.proceed(request);
+                if (response.code() != SERVICE_UNAVAILABLE || attempt >= maxRetries) {
+                    return response;
+                }
+                response.close();
+            } catch (InterruptedIOException ex) {
+                // Timeouts already waited long enough
+                throw ex;
+            } catch (IOException ex) {
+                if (attempt >= maxRetries) {
+                    throw ex;
+                }
+            }
+            log.warn("Retrying MinIO {} {} (attempt {} of {})", request.method(), request.url().encodedPath(),
+                    attempt + 1, maxRetries);
+            sleep(backoff.toMillis() << attempt);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
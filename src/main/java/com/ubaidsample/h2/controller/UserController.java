@@ -7,25 +7,42 @@
 
 package com.ubaidsample.h2.controller;
 
+import com.ubaidsample.h2.dto.common.ExportFormat;
+import com.ubaidsample.h2.dto.request.FilterRequestDTO;
 import com.ubaidsample.h2.dto.request.PageRequestDTO;
 import com.ubaidsample.h2.dto.request.UserPartialUpdateRequestDTO;
 import com.ubaidsample.h2.dto.request.UserRequestDTO;
+import com.ubaidsample.h2.dto.response.BulkUserResponseDTO;
 import com.ubaidsample.h2.dto.response.PageResponseDTO;
+import com.ubaidsample.h2.dto.response.UploadJobResponse;
 import com.ubaidsample.h2.dto.response.UserResponseDTO;
 import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.exception.InvalidFilterException;
+import com.ubaidsample.h2.service.ProfileImageUploadJobService;
+import com.ubaidsample.h2.service.UserBulkService;
+import com.ubaidsample.h2.service.UserExportService;
 import com.ubaidsample.h2.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
@@ -42,6 +59,12 @@ public class UserController {
 
     private final UserService service;
 
+    private final ProfileImageUploadJobService uploadJobService;
+
+    private final UserExportService exportService;
+
+    private final UserBulkService bulkService;
+
     @Operation(
             summary = "Create new resource",
             description = "Creates a new resource with the provided information"
@@ -65,6 +88,23 @@ public class UserController {
         return ResponseEntity.created(location).body(response);
     }
 
+    @Operation(
+            summary = "Create resources in bulk",
+            description = "Creates many resources at once, returning a result per item in request order"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Items processed, see the status of each result"),
+            @ApiResponse(responseCode = "400", description = "No items provided"),
+            @ApiResponse(responseCode = "413", description = "Too many items in one request")
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkUserResponseDTO> saveAll(
+            @Parameter(description = "Resources to create, each validated on its own")
+            @RequestBody List<UserRequestDTO> requests) {
+        log.info("UserController -> saveAll() called");
+        return ResponseEntity.ok(bulkService.saveAll(requests));
+    }
+
     @Operation(
             summary = "Upload image",
             description = "Upload image path"
@@ -83,25 +123,94 @@ public class UserController {
         return ResponseEntity.ok(Map.of("image_url", presignedUrl));
     }
 
+    @Operation(
+            summary = "Stream image",
+            description = "Upload image by streaming the raw request body into the object store, without a multipart request"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Upload image successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid data provided"),
+            @ApiResponse(responseCode = "404", description = "Resource not found"),
+            @ApiResponse(responseCode = "413", description = "File too large")
+    })
+    @PostMapping(value = "/{id}/upload-image/stream",
+            consumes = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE})
+    public ResponseEntity<?> streamProfileImage(
+            @Parameter(description = "ID of the resource to upload image")
+            @PathVariable(value = "id") @Positive Long id,
+            @Parameter(description = "Original file name, used for the object name")
+            @RequestParam(value = "fileName", required = false) String fileName,
+            HttpServletRequest request) throws IOException {
+        log.info("UserController -> streamProfileImage() called with ID: {}", id);
+        var presignedUrl = service.uploadProfileImage(id, request.getInputStream(), request.getContentType(),
+                request.getContentLengthLong(), fileName);
+        return ResponseEntity.ok(Map.of("image_url", presignedUrl));
+    }
+
+    @Operation(
+            summary = "Upload image asynchronously",
+            description = "Accepts the image and uploads it in the background, poll the returned job for progress"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Upload accepted"),
+            @ApiResponse(responseCode = "400", description = "Invalid data provided"),
+            @ApiResponse(responseCode = "404", description = "Resource not found"),
+            @ApiResponse(responseCode = "503", description = "Upload queue is full")
+    })
+    @PostMapping("/{id}/upload-image/async")
+    public ResponseEntity<UploadJobResponse> uploadProfileImageAsync(
+            @Parameter(description = "ID of the resource to upload image")
+            @PathVariable(value = "id") @Positive Long id,
+            @RequestParam("file") MultipartFile file) throws IOException {
+        log.info("UserController -> uploadProfileImageAsync() called with ID: {}", id);
+        var response = uploadJobService.submit(id, file);
+        URI location = ServletUriComponentsBuilder
+                .fromCurrentContextPath()
+                .path("/api/v1/user/{id}/upload-image/jobs/{jobId}")
+                .buildAndExpand(id, response.jobId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(response);
+    }
+
+    @Operation(
+            summary = "Get upload job",
+            description = "Retrieve the progress of an asynchronous image upload"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Upload job retrieved successfully"),
+            @ApiResponse(responseCode = "404", description = "Upload job not found")
+    })
+    @GetMapping("/{id}/upload-image/jobs/{jobId}")
+    public ResponseEntity<UploadJobResponse> getUploadJob(
+            @Parameter(description = "ID of the resource the image was uploaded for")
+            @PathVariable(value = "id") @Positive Long id,
+            @Parameter(description = "ID of the upload job")
+            @PathVariable(value = "jobId") String jobId) {
+        log.info("UserController -> getUploadJob() called with ID: {}, jobId: {}", id, jobId);
+        var response = uploadJobService.findJob(id, jobId);
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(
             summary = "Get image",
             description = "Retrieve presigned GET URL for image"
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Image path retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown image size"),
             @ApiResponse(responseCode = "404", description = "Image not found")
     })
     @GetMapping("/{id}/image")
     public ResponseEntity<?> getProfileImage(
             @Parameter(description = "ID of the resource to get the image")
-            @PathVariable(value = "id") @Positive Long id
-    ) throws Exception {
-        var response = service.findById(id);
-        if (response.getProfileImageObjectName() == null) {
-            return ResponseEntity.notFound().build();
-        }
-        var presignedUrl = service.generateDownloadUrl(response.getProfileImageObjectName());
-        return ResponseEntity.ok(Map.of("image_url", presignedUrl));
+            @PathVariable(value = "id") @Positive Long id,
+            @Parameter(description = "Rendition size, e.g. thumb, small or medium, the original when absent")
+            @RequestParam(value = "size", required = false) String size
+    ) {
+        log.info("UserController -> getProfileImage() called with ID: {}, size: {}", id, size);
+        return service.findProfileImageUrl(id, size)
+                .<ResponseEntity<?>>map(presignedUrl -> ResponseEntity.ok(Map.of("image_url", presignedUrl)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @Operation(
@@ -224,4 +333,60 @@ public class UserController {
         log.info("UserController -> search() called");
         return service.search(pageRequest);
     }
-}
\ No newline at end of file
+
+    @Operation(
+            summary = "Export resources",
+            description = "Streams every resource matching the search as NDJSON or CSV, filters are given as field:operator:value"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Export streamed successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid format or filter")
+    })
+    // Read unsplit from the raw parameters below, so it is documented here rather than bound
+    @Parameter(name = "filter", in = ParameterIn.QUERY,
+            description = "Repeatable filter as field:operator:value, values of 'in' separated by commas",
+            array = @ArraySchema(schema = @Schema(type = "string")))
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @Parameter(description = "Output format: ndjson or csv")
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @Parameter(description = "Free-text search over the searchable fields, every word has to start a word of one of them")
+            @RequestParam(value = "search", required = false) String search,
+            @Parameter(description = "Sort field, the primary key by default")
+            @RequestParam(value = "sortBy", required = false) String sortBy,
+            @Parameter(description = "Sort direction: asc or desc")
+            @RequestParam(value = "sortDir", defaultValue = "asc") String sortDir,
+            @Parameter(hidden = true) @RequestParam MultiValueMap<String, String> parameters) {
+        log.info("UserController -> export() called with format: {}", format);
+        ExportFormat exportFormat = ExportFormat.from(format);
+        PageRequestDTO pageRequest = new PageRequestDTO();
+        pageRequest.setSearch(search);
+        // Read unsplit, binding to List<String> would also split a single filter at the commas of its 'in' values
+        pageRequest.setFilters(parseFilters(parameters.get("filter")));
+        pageRequest.setSortBy(sortBy);
+        pageRequest.setSortDir(sortDir);
+        exportService.validate(pageRequest);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users." + exportFormat.getExtension()).build().toString())
+                .body(out -> exportService.export(pageRequest, exportFormat, out));
+    }
+
+    private static List<FilterRequestDTO> parseFilters(List<String> filters) {
+        if (filters == null) {
+            return null;
+        }
+        return filters.stream()
+                .map(filter -> {
+                    // The value keeps any further colons, e.g. in a LocalDateTime
+                    String[] parts = filter.split(":", 3);
+                    if (parts.length != 3) {
+                        throw new InvalidFilterException("Filter must be field:operator:value, got: " + filter);
+                    }
+                    Object value = parts[1].equalsIgnoreCase("in") ? List.of(parts[2].split(",")) : parts[2];
+                    return new FilterRequestDTO(parts[0], parts[1], value);
+                })
+                .toList();
+    }
+}
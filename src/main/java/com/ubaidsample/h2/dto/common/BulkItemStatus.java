@@ -0,0 +1,18 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.common;
+
+public enum BulkItemStatus {
+    CREATED,
+    // The idempotency key was already processed, the stored user is returned
+    EXISTING,
+    INVALID,
+    // Email or user name taken by another user, or repeated within the request
+    CONFLICT,
+    FAILED
+}
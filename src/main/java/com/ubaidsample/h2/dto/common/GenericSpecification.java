@@ -9,13 +9,13 @@ package com.ubaidsample.h2.dto.common;
 
 import com.ubaidsample.h2.dto.request.FilterRequestDTO;
 import com.ubaidsample.h2.exception.InvalidFilterException;
-import com.ubaidsample.h2.util.EntityUtil;
+import com.ubaidsample.h2.util.EntityMetadata;
+import com.ubaidsample.h2.util.EntityMetadata.Attribute;
+import com.ubaidsample.h2.util.InvertedIndex;
 import jakarta.persistence.criteria.*;
 import org.springframework.data.jpa.domain.Specification;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -23,29 +23,39 @@ public class GenericSpecification<T> implements Specification<T> {
 
     private final String search;
     private final List<FilterRequestDTO> filters;
+    private final Collection<?> searchIds;
+    private final KeysetCursor after;
+    private final boolean ascending;
 
     public GenericSpecification(String search, List<FilterRequestDTO> filters) {
+        this(search, filters, null, null, true);
+    }
+
+    /*
+     * searchIds: ids the full-text index matched for search, used instead of LIKE when not null.
+     * after: keyset variant, only rows after the cursor in (sortField, id) order.
+     */
+    public GenericSpecification(String search, List<FilterRequestDTO> filters, Collection<?> searchIds,
+                                KeysetCursor after, boolean ascending) {
         this.search = search;
         this.filters = filters;
+        this.searchIds = searchIds;
+        this.after = after;
+        this.ascending = ascending;
     }
 
     @Override
     public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
 
+        EntityMetadata<?> metadata = EntityMetadata.of(root.getJavaType());
         List<Predicate> predicates = new ArrayList<>();
         if (filters != null) {
             for (FilterRequestDTO f : filters) {
-                Path<?> path = getPath(root, f.getField());
-                Class<?> fieldType = path.getJavaType();
-                Object typedValue = f.getValue();
+                Attribute attribute = metadata.getAttribute(f.getField());
+                Path<?> path = attribute.toPath(root);
+                Class<?> fieldType = attribute.type();
                 // Convert value(s) to the correct type
-                if (typedValue instanceof Collection<?> rawCol) {
-                    typedValue = rawCol.stream()
-                            .map(v -> EntityUtil.convertValue(fieldType, v))
-                            .toList();
-                } else {
-                    typedValue = EntityUtil.convertValue(fieldType, typedValue);
-                }
+                Object typedValue = attribute.convert(f.getValue());
                 String operator = f.getOperator().toLowerCase();
                 switch (operator) {
                     case "eq" -> predicates.add(cb.equal(path, typedValue));
@@ -57,10 +67,10 @@ public class GenericSpecification<T> implements Specification<T> {
                         predicates.add(cb.like((Expression<String>) path.as(String.class), "%" + typedValue + "%"));
                     }
                     case "lt", "lte", "gt", "gte" -> {
-                        if (!Comparable.class.isAssignableFrom(fieldType)) {
+                        if (!attribute.isSortable()) {
                             throw new InvalidFilterException("Field " + f.getField() + " with operator " + operator + " is not Comparable");
                         }
-                        Expression<? extends Comparable> exp = path.as((Class<? extends Comparable>) fieldType);
+                        Expression<Comparable> exp = (Expression<Comparable>) path;
                         Comparable compValue = (Comparable) typedValue;
                         switch (operator) {
                             case "lt" -> predicates.add(cb.lessThan(exp, compValue));
@@ -78,28 +88,48 @@ public class GenericSpecification<T> implements Specification<T> {
             }
         }
         if (search != null && !search.isBlank()) {
-            // Predefined searchable fields (String fields)
-            List<String> searchableFields = Arrays.stream(root.getJavaType().getDeclaredFields())
-                    .filter(f -> f.getType().equals(String.class))
-                    .map(Field::getName)
-                    .toList();
-            if (!searchableFields.isEmpty()) {
-                List<Predicate> searchPreds = searchableFields.stream()
-                        .map(fieldName -> (Expression<String>) getPath(root, fieldName).as(String.class))
-                        .map(expr -> cb.like(expr, "%" + search + "%"))
-                        .toList();
-                predicates.add(cb.or(searchPreds.toArray(new Predicate[0])));
+            if (searchIds != null) {
+                predicates.add(searchIds.isEmpty() ? cb.disjunction() : metadata.getIdAttribute().toPath(root).in(searchIds));
+            } else {
+                // Fallback when the index is off, not built yet or matched too much: LIKE over the @Searchable fields,
+                // with the index's terms, so every term has to start a word in one of them
+                List<Attribute> searchableAttributes = metadata.getSearchableAttributes();
+                if (searchableAttributes.isEmpty()) {
+                    throw new InvalidFilterException("Entity " + root.getJavaType().getSimpleName() + " has no @Searchable fields");
+                }
+                List<String> terms = InvertedIndex.tokenize(search);
+                if (terms.isEmpty()) {
+                    predicates.add(cb.disjunction());
+                }
+                for (String term : terms) {
+                    List<Predicate> termPreds = new ArrayList<>();
+                    for (Attribute attribute : searchableAttributes) {
+                        Expression<String> text = cb.lower(attribute.toPath(root));
+                        InvertedIndex.wordPrefixPatterns(term).forEach(pattern -> termPreds.add(cb.like(text, pattern, '\\')));
+                    }
+                    predicates.add(cb.or(termPreds.toArray(new Predicate[0])));
+                }
             }
         }
+        if (after != null) {
+            predicates.add(seek(metadata, root, cb));
+        }
         return predicates.isEmpty() ? cb.conjunction() : cb.and(predicates.toArray(new Predicate[0]));
     }
 
-    private Path<?> getPath(Root<T> root, String field) {
-        String[] parts = field.split("\\.");
-        Path<?> path = root;
-        for (String part : parts) {
-            path = path.get(part);
+    // sort > v OR (sort = v AND id > lastId), mirrored for descending order
+    private Predicate seek(EntityMetadata<?> metadata, Root<T> root, CriteriaBuilder cb) {
+        Attribute idAttribute = metadata.getIdAttribute();
+        Path<Comparable> idPath = idAttribute.toPath(root);
+        Comparable idValue = (Comparable) idAttribute.convert(after.id());
+        Predicate afterId = ascending ? cb.greaterThan(idPath, idValue) : cb.lessThan(idPath, idValue);
+        if (after.sortField().equals(idAttribute.path())) {
+            return afterId;
         }
-        return path;
+        Attribute sortAttribute = metadata.getAttribute(after.sortField());
+        Path<Comparable> sortPath = sortAttribute.toPath(root);
+        Comparable sortValue = (Comparable) sortAttribute.convert(after.sortValue());
+        Predicate afterSort = ascending ? cb.greaterThan(sortPath, sortValue) : cb.lessThan(sortPath, sortValue);
+        return cb.or(afterSort, cb.and(cb.equal(sortPath, sortValue), afterId));
     }
-}
\ No newline at end of file
+}
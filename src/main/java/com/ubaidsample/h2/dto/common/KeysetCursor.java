@@ -0,0 +1,45 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.common;
+
+import com.ubaidsample.h2.exception.InvalidFilterException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a keyset page: the sort field, its value and the id as a tie-breaker.
+ * Values are kept as strings and converted to the attribute type when the seek predicate is built.
+ */
+public record KeysetCursor(String sortField, String sortValue, String id) {
+
+    private static final String SEPARATOR = "\n";
+
+    public static KeysetCursor of(String sortField, Object sortValue, Object id) {
+        return new KeysetCursor(sortField, String.valueOf(sortValue), String.valueOf(id));
+    }
+
+    // Opaque to clients, the value goes last so it may contain the separator itself
+    public String encode() {
+        String raw = sortField + SEPARATOR + id + SEPARATOR + sortValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 3);
+            if (parts.length != 3) {
+                throw new InvalidFilterException("Invalid cursor: " + cursor);
+            }
+            return new KeysetCursor(parts[0], parts[2], parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidFilterException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.common;
+
+import java.util.Map;
+
+// Read-only projection of the profile image columns, selected without loading the User entity
+public record ProfileImageDTO(String bucket, String objectName, Map<String, String> renditions) {}
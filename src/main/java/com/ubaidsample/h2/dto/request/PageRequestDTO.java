@@ -24,6 +24,15 @@ public class PageRequestDTO {
     private int size = 10;
     private String sortBy = "id";
     private String sortDir = "asc";
+    // Every word has to start a word of a @Searchable field: "jo do" finds john.doe, "mail" does not find gmail.com
     private String search;
     private List<FilterRequestDTO> filters;
+    // false: Slice-style response with hasNext only, no count query
+    private boolean withTotal = true;
+    // Total from a short-lived cached count per filter set instead of a count on every call
+    private boolean approximateTotal = false;
+    // Keyset (seek) pagination: page is ignored, no count query is run
+    private boolean cursor = false;
+    // Opaque nextCursor of the previous page, implies cursor mode
+    private String after;
 }
\ No newline at end of file
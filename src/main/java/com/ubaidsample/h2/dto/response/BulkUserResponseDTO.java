@@ -0,0 +1,39 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserResponseDTO {
+
+    @JsonProperty("total")
+    private int total;
+
+    @JsonProperty("created")
+    private int created;
+
+    @JsonProperty("existing")
+    private int existing;
+
+    @JsonProperty("rejected")
+    private int rejected;
+
+    // One result per request item, in request order
+    @JsonProperty("results")
+    private List<BulkUserResultDTO> results;
+}
@@ -0,0 +1,42 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ubaidsample.h2.dto.common.BulkItemStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUserResultDTO {
+
+    // Position of the item in the request
+    @JsonProperty("index")
+    private int index;
+
+    @JsonProperty("idempotency_key")
+    private String idempotencyKey;
+
+    @JsonProperty("status")
+    private BulkItemStatus status;
+
+    @JsonProperty("user")
+    private UserResponseDTO user;
+
+    @JsonProperty("errors")
+    private List<String> errors;
+}
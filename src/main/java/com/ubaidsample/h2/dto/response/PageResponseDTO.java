@@ -7,6 +7,7 @@
 
 package com.ubaidsample.h2.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -18,12 +19,19 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class PageResponseDTO<T> {
 
     private List<T> content;
     private int page;
     private int size;
-    private long totalElements;
-    private int totalPages;
+    // Not computed in cursor mode or with withTotal=false
+    private Long totalElements;
+    private Integer totalPages;
     private boolean last;
+    private boolean hasNext;
+    // Pass as "after" to fetch the next page in cursor mode
+    private String nextCursor;
+    // Set when totalElements comes from the cached approximate count
+    private Boolean totalApproximate;
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ubaidsample.h2.dto.common.UploadJobStatus;
+
+import java.time.LocalDateTime;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UploadJobResponse(
+        @JsonProperty("job_id") String jobId,
+        @JsonProperty("user_id") Long userId,
+        @JsonProperty("status") UploadJobStatus status,
+        @JsonProperty("image_url") String imageUrl,
+        @JsonProperty("error") String error,
+        @JsonProperty("updated_date") LocalDateTime updatedDate) {
+
+    public UploadJobResponse withStatus(UploadJobStatus status) {
+        return new UploadJobResponse(jobId, userId, status, imageUrl, error, LocalDateTime.now());
+    }
+
+    public UploadJobResponse completed(String imageUrl) {
+        return new UploadJobResponse(jobId, userId, UploadJobStatus.COMPLETED, imageUrl, null, LocalDateTime.now());
+    }
+
+    public UploadJobResponse failed(String error) {
+        return new UploadJobResponse(jobId, userId, UploadJobStatus.FAILED, null, error, LocalDateTime.now());
+    }
+}
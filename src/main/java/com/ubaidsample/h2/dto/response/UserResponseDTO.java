@@ -15,6 +15,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.LocalDate;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -49,6 +50,9 @@ public class UserResponseDTO {
     @JsonProperty("profile_image_bucket")
     private String profileImageBucket;
 
+    @JsonProperty("profile_image_renditions")
+    private Map<String, String> profileImageRenditions;
+
     @JsonProperty("auditHistoryDTO")
     private AuditHistoryDTO auditHistoryDTO;
 }
\ No newline at end of file
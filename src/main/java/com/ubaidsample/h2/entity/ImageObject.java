@@ -0,0 +1,63 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Comment;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Comment("Content-addressed profile image objects and how many users reference each")
+@Table(name = "image_objects")
+public class ImageObject implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "object_name", nullable = false, updatable = false, length = 100)
+    @Comment("Object name derived from the SHA-256 digest of the content")
+    private String objectName;
+
+    @Column(name = "bucket", nullable = false, length = 63)
+    @Comment("Bucket holding the object and its renditions")
+    private String bucket;
+
+    @Column(name = "ref_count", nullable = false)
+    @Comment("Users referencing the object, its objects are removed when this drops to zero")
+    private int refCount;
+
+    @Column(name = "size_bytes", nullable = false)
+    @Comment("Size of the original in bytes")
+    private long sizeBytes;
+
+    @Column(name = "stored", nullable = false)
+    @Comment("Whether the object and its renditions are written, false while the first upload is still running")
+    private boolean stored;
+
+    @Column(name = "renditions", length = 2000)
+    @Convert(converter = ProfileImageRenditionsConverter.class)
+    @Comment("Rendition object names per size")
+    private Map<String, String> renditions = Map.of(); // Replaced as a whole, never modified in place
+
+    @Column(name = "created_date", nullable = false, updatable = false)
+    @Comment("When the object row was first created")
+    private LocalDateTime createdDate;
+
+    @Column(name = "deleting_until")
+    @Comment("Set while the objects are being removed, uploads of the content wait for the removal until then")
+    private LocalDateTime deletingUntil;
+}
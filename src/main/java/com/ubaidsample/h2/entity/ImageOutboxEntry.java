@@ -0,0 +1,100 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Comment;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Entity
+@NoArgsConstructor
+@Comment("Object store operations written with the change that causes them, run by the outbox dispatcher")
+@Table(name = "image_outbox", indexes = {
+        @Index(name = "idx_image_outbox_available_at", columnList = "available_at"),
+        @Index(name = "idx_image_outbox_guard_key", columnList = "guard_key")
+})
+public class ImageOutboxEntry implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public enum Operation {
+        // Remove the object and its renditions
+        DELETE,
+        // Drop a reference to content-addressed content, objects of any other name are removed like DELETE
+        RELEASE,
+        // Remove content-addressed content whose last reference was released, unless it is referenced again
+        PURGE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "image_outbox_seq")
+    @SequenceGenerator(name = "image_outbox_seq", sequenceName = "image_outbox_seq", allocationSize = 50)
+    @Column(name = "id", nullable = false, updatable = false)
+    @Comment("Unique identifier, also the dispatch order")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false, length = 20)
+    @Comment("Operation to run against the object store")
+    private Operation operation;
+
+    @Column(name = "bucket", nullable = false, length = 63)
+    @Comment("Bucket holding the object")
+    private String bucket;
+
+    @Column(name = "object_name", nullable = false, length = 255)
+    @Comment("Object the operation applies to")
+    private String objectName;
+
+    @Column(name = "renditions", length = 2000)
+    @Convert(converter = ProfileImageRenditionsConverter.class)
+    @Comment("Rendition object names per size, removed together with the object")
+    private Map<String, String> renditions = Map.of();
+
+    @Column(name = "guard_key", length = 36)
+    @Comment("Set on entries that undo an upload unless the upload cancels them by this key")
+    private String guardKey;
+
+    @Column(name = "attempts", nullable = false)
+    @Comment("Failed dispatch attempts so far")
+    private int attempts;
+
+    @Column(name = "available_at", nullable = false)
+    @Comment("Earliest time the entry is dispatched, moved on by the backoff after a failure")
+    private LocalDateTime availableAt;
+
+    @Column(name = "claim", length = 36)
+    @Comment("Dispatch round that claimed the entry, only that round runs, retries or deletes it")
+    private String claim;
+
+    @Column(name = "last_error", length = 500)
+    @Comment("Error of the last failed attempt")
+    private String lastError;
+
+    @Column(name = "created_date", nullable = false, updatable = false)
+    @Comment("When the entry was written")
+    private LocalDateTime createdDate;
+
+    public ImageOutboxEntry(Operation operation, String bucket, String objectName, Map<String, String> renditions,
+                            String guardKey, LocalDateTime availableAt) {
+        this.operation = operation;
+        this.bucket = bucket;
+        this.objectName = objectName;
+        this.renditions = renditions;
+        this.guardKey = guardKey;
+        this.availableAt = availableAt;
+        this.createdDate = LocalDateTime.now();
+    }
+}
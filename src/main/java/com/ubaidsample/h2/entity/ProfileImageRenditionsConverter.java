@@ -0,0 +1,48 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Map;
+
+// Rendition object names per size as a JSON object in one column, e.g. {"thumb":"user-5-...-thumb-avatar.png"}
+@Converter
+public class ProfileImageRenditionsConverter implements AttributeConverter<Map<String, String>, String> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> TYPE = new TypeReference<>() {};
+
+    @Override
+    public String convertToDatabaseColumn(Map<String, String> renditions) {
+        if (renditions == null || renditions.isEmpty()) {
+            return null;
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(renditions);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Could not write profile image renditions", ex);
+        }
+    }
+
+    @Override
+    public Map<String, String> convertToEntityAttribute(String column) {
+        if (column == null || column.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return Map.copyOf(OBJECT_MAPPER.readValue(column, TYPE));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Could not read profile image renditions", ex);
+        }
+    }
+}
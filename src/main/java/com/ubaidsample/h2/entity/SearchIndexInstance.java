@@ -0,0 +1,37 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Comment;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Comment("Application instances keeping an in-memory search index, each only sees the writes of its own")
+@Table(name = "search_index_instances")
+public class SearchIndexInstance implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "instance_id", nullable = false, updatable = false, length = 36)
+    @Comment("Random id the instance picked at startup")
+    private String instanceId;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    @Comment("Last heartbeat, an instance that stops sending them is gone after three intervals")
+    private LocalDateTime heartbeatAt;
+}
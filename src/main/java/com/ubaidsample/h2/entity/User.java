@@ -7,22 +7,30 @@
 
 package com.ubaidsample.h2.entity;
 
+import com.ubaidsample.h2.annotation.Searchable;
+import com.ubaidsample.h2.config.HibernateCacheConfig;
 import com.ubaidsample.h2.dto.common.AuditHistoryDTO;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Comment;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.Map;
 
 @Data
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
 @Comment("Stores user information")
-@EntityListeners(AuditingEntityListener.class)
+// Second-level cached, read-write keeps the cached copy consistent with every update and delete through Hibernate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USER_REGION)
+@EntityListeners({AuditingEntityListener.class, UserSearchIndexListener.class, UserReadCoalescingListener.class})
 @Table(name = "users",
         uniqueConstraints = {
                 @UniqueConstraint(name = "uk_user_email", columnNames = "email"),
@@ -35,7 +43,9 @@ public class User implements Serializable {
 	private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // A pooled sequence hands out ids without an INSERT round trip each, which lets Hibernate batch inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     @Column(name= "user_id", nullable = false, updatable = false)
 	@Comment("Unique identifier for each user")
     private Long userId;
@@ -46,10 +56,12 @@ public class User implements Serializable {
 
     @Column(name = "user_name", nullable = false, length = 50)
 	@Comment("User name")
+	@Searchable
     private String userName;
 
     @Column(name = "email", nullable = false, length = 50)
 	@Comment("User email")
+	@Searchable
     private String email;
 
     @Column(name = "password", nullable = false, length = 255)
@@ -76,6 +88,11 @@ public class User implements Serializable {
 	@Comment("User profile image bucket")
 	private String profileImageBucket; // Optional, if you use multiple buckets
 
+	@Column(name = "profile_image_renditions", length = 2000)
+	@Convert(converter = ProfileImageRenditionsConverter.class)
+	@Comment("User profile image rendition object names per size")
+	private Map<String, String> profileImageRenditions = Map.of(); // Replaced as a whole, never modified in place
+
 	@Embedded
 	@AttributeOverrides({
 			@AttributeOverride(name = "createdBy", column = @Column(name = "created_by")),
@@ -0,0 +1,32 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.entity;
+
+import com.ubaidsample.h2.service.UserReadCoalescer;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Tells UserReadCoalescer about every update or delete of a user, whichever path it comes from,
+ * so reads of that id stop sharing loads until the write's transaction completes.
+ */
+public class UserReadCoalescingListener {
+
+    private final ObjectProvider<UserReadCoalescer> readCoalescer;
+
+    public UserReadCoalescingListener(ObjectProvider<UserReadCoalescer> readCoalescer) {
+        this.readCoalescer = readCoalescer;
+    }
+
+    @PreUpdate
+    @PreRemove
+    void onWrite(User user) {
+        readCoalescer.getObject().writeStarted(user.getUserId());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.entity;
+
+import com.ubaidsample.h2.service.UserSearchIndex;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Keeps UserSearchIndex in sync with the users table. Changes are applied only after the transaction commits,
+ * so a rolled back save never becomes searchable. Instantiated by Hibernate through the Spring bean container.
+ */
+public class UserSearchIndexListener {
+
+    private final ObjectProvider<UserSearchIndex> searchIndex;
+
+    public UserSearchIndexListener(ObjectProvider<UserSearchIndex> searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    void onSave(User user) {
+        UserSearchIndex index = searchIndex.getObject();
+        // Capture the values now, the entity may change again before commit
+        Long userId = user.getUserId();
+        List<String> texts = index.searchableTexts(user);
+        afterCommit(() -> index.index(userId, texts));
+    }
+
+    @PostRemove
+    void onRemove(User user) {
+        UserSearchIndex index = searchIndex.getObject();
+        Long userId = user.getUserId();
+        afterCommit(() -> index.remove(userId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
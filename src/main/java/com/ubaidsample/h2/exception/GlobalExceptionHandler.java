@@ -8,6 +8,7 @@
 package com.ubaidsample.h2.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -90,6 +91,39 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(InvalidImageSizeException.class)
+    public ResponseEntity<ErrorDetails> invalidImageSizeException(InvalidImageSizeException ex, HttpServletRequest request) {
+        var error = new ErrorDetails(
+                ex.getMessage(),
+                HttpStatus.BAD_REQUEST.value(),
+                new Date(),
+                request.getRequestURI()
+        );
+        return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(FileTooLargeException.class)
+    public ResponseEntity<ErrorDetails> fileTooLargeException(FileTooLargeException ex, HttpServletRequest request) {
+        var error = new ErrorDetails(
+                ex.getMessage(),
+                HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                new Date(),
+                request.getRequestURI()
+        );
+        return new ResponseEntity<>(error, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    @ExceptionHandler(TooManyItemsException.class)
+    public ResponseEntity<ErrorDetails> tooManyItemsException(TooManyItemsException ex, HttpServletRequest request) {
+        var error = new ErrorDetails(
+                ex.getMessage(),
+                HttpStatus.PAYLOAD_TOO_LARGE.value(),
+                new Date(),
+                request.getRequestURI()
+        );
+        return new ResponseEntity<>(error, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     @ExceptionHandler(MinioOperationException.class)
     public ResponseEntity<?> minioOperationException(MinioOperationException ex, HttpServletRequest request) {
         var error = new ErrorDetails(
@@ -101,6 +135,17 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ErrorDetails> taskRejectedException(TaskRejectedException ex, HttpServletRequest request) {
+        var error = new ErrorDetails(
+                "Server is busy, please retry later",
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                new Date(),
+                request.getRequestURI()
+        );
+        return new ResponseEntity<>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorDetails> globalExceptionHandler(Exception ex, HttpServletRequest request) {
         var error = new ErrorDetails(
@@ -0,0 +1,63 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.mapper;
+
+import com.ubaidsample.h2.dto.common.AuditHistoryDTO;
+import com.ubaidsample.h2.dto.request.UserPartialUpdateRequestDTO;
+import com.ubaidsample.h2.dto.request.UserRequestDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.NullValuePropertyMappingStrategy;
+import org.mapstruct.ReportingPolicy;
+
+/**
+ * Generated at compile time by MapStruct, plain getter/setter calls with no reflection or type-map lookup per call.
+ * Unmapped target properties fail the build so a new field cannot be silently dropped.
+ */
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING, unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface UserMapper {
+
+    // Image fields are set by the upload only, which takes the content reference they stand for
+    @Mapping(target = "userId", ignore = true)
+    @Mapping(target = "profileImageObjectName", ignore = true)
+    @Mapping(target = "profileImageBucket", ignore = true)
+    @Mapping(target = "profileImageRenditions", ignore = true)
+    @Mapping(target = "auditHistoryDTO", ignore = true)
+    User toEntity(UserRequestDTO request);
+
+    UserResponseDTO toResponse(User entity);
+
+    // Password is applied by the caller only when provided
+    @Mapping(target = "userId", ignore = true)
+    @Mapping(target = "idempotencyKey", ignore = true)
+    @Mapping(target = "password", ignore = true)
+    @Mapping(target = "profileImageObjectName", ignore = true)
+    @Mapping(target = "profileImageBucket", ignore = true)
+    @Mapping(target = "profileImageRenditions", ignore = true)
+    @Mapping(target = "auditHistoryDTO", ignore = true)
+    void update(UserRequestDTO request, @MappingTarget User entity);
+
+    // Absent fields keep their current value, password is applied by the caller only when not blank
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "userId", ignore = true)
+    @Mapping(target = "idempotencyKey", ignore = true)
+    @Mapping(target = "password", ignore = true)
+    @Mapping(target = "profileImageObjectName", ignore = true)
+    @Mapping(target = "profileImageBucket", ignore = true)
+    @Mapping(target = "profileImageRenditions", ignore = true)
+    @Mapping(target = "auditHistoryDTO", ignore = true)
+    void partialUpdate(UserPartialUpdateRequestDTO updates, @MappingTarget User entity);
+
+    // Responses get their own copy, the embeddable stays owned by the managed entity
+    AuditHistoryDTO copy(AuditHistoryDTO auditHistory);
+}
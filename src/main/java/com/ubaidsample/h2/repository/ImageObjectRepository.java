@@ -0,0 +1,27 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.repository;
+
+import com.ubaidsample.h2.entity.ImageObject;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ImageObjectRepository extends JpaRepository<ImageObject, String> {
+
+    // Row lock per content digest, serializes reference changes and the writes and removals of the object
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from ImageObject o where o.objectName = :objectName")
+    Optional<ImageObject> findForUpdate(@Param("objectName") String objectName);
+}
@@ -0,0 +1,56 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.repository;
+
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImageOutboxRepository extends JpaRepository<ImageOutboxEntry, Long> {
+
+    // Oldest first, so operations on the same object run in the order they were written
+    @Query("select e.id from ImageOutboxEntry e where e.availableAt <= :now order by e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Limit limit);
+
+    // Rows a concurrent round claimed first are no longer due once their lock is released, so each goes to one round
+    @Modifying
+    @Query("update ImageOutboxEntry e set e.claim = :claim, e.availableAt = :leaseUntil "
+            + "where e.id in :ids and e.availableAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("claim") String claim, @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<ImageOutboxEntry> findByClaimOrderById(String claim);
+
+    @Modifying
+    @Query("delete from ImageOutboxEntry e where e.id in :ids and e.claim = :claim")
+    int deleteClaimed(@Param("ids") Collection<Long> ids, @Param("claim") String claim);
+
+    @Modifying
+    @Query("update ImageOutboxEntry e set e.attempts = e.attempts + 1, e.availableAt = :availableAt, "
+            + "e.lastError = :lastError where e.id = :id and e.claim = :claim")
+    int reschedule(@Param("id") Long id, @Param("claim") String claim, @Param("availableAt") LocalDateTime availableAt,
+                   @Param("lastError") String lastError);
+
+    // Only a guard that is neither due nor claimed, one that is may already have removed the upload
+    @Modifying
+    @Query("delete from ImageOutboxEntry e where e.guardKey = :guardKey and e.claim is null and e.availableAt > :now")
+    int deleteByGuardKey(@Param("guardKey") String guardKey, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update ImageOutboxEntry e set e.availableAt = :availableAt where e.guardKey = :guardKey and e.claim is null")
+    int rescheduleByGuardKey(@Param("guardKey") String guardKey, @Param("availableAt") LocalDateTime availableAt);
+}
@@ -0,0 +1,29 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.repository;
+
+import com.ubaidsample.h2.entity.SearchIndexInstance;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SearchIndexInstanceRepository extends JpaRepository<SearchIndexInstance, String> {
+
+    @Query("select count(i) from SearchIndexInstance i where i.instanceId <> :instanceId and i.heartbeatAt > :since")
+    long countOthersSince(@Param("instanceId") String instanceId, @Param("since") LocalDateTime since);
+
+    // Instances that stopped without saying so
+    @Modifying
+    @Query("delete from SearchIndexInstance i where i.heartbeatAt <= :before")
+    int deleteStale(@Param("before") LocalDateTime before);
+}
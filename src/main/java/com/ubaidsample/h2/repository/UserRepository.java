@@ -7,12 +7,21 @@
 
 package com.ubaidsample.h2.repository;
 
+import com.ubaidsample.h2.dto.common.ProfileImageDTO;
 import com.ubaidsample.h2.entity.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,15 +31,45 @@ public interface UserRepository extends JpaRepository<User, Long>,
 
     Optional<User> findByIdempotencyKey(String key);
 
+    List<User> findByIdempotencyKeyIn(Collection<String> keys);
+
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select u.userName from User u where u.userName in :userNames")
+    List<String> findExistingUserNames(@Param("userNames") Collection<String> userNames);
+
+    // Answered from the query cache until a write to the users table invalidates it
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select new com.ubaidsample.h2.dto.common.ProfileImageDTO(u.profileImageBucket, u.profileImageObjectName, "
+            + "u.profileImageRenditions) "
+            + "from User u where u.userId = :userId")
+    Optional<ProfileImageDTO> findProfileImageByUserId(@Param("userId") Long userId);
+
+    // Row lock while the profile image is swapped, so concurrent uploads each see the image the other replaced
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from User u where u.userId = :userId")
+    Optional<User> findForUpdate(@Param("userId") Long userId);
+
+    // Every image a batch of users references, soft-deleted users included since they can be activated again
+    @Query("select new com.ubaidsample.h2.dto.common.ProfileImageDTO(u.profileImageBucket, u.profileImageObjectName, "
+            + "u.profileImageRenditions) "
+            + "from User u where u.userId in :userIds and u.profileImageObjectName is not null")
+    List<ProfileImageDTO> findProfileImagesByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
     List<User> findAllByAuditHistoryDTO_DeletedFalse();
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByEmailAndAuditHistoryDTO_DeletedFalse(String email);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByUserNameAndAuditHistoryDTO_DeletedFalse(String userName);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByUserIdAndAuditHistoryDTO_DeletedFalse(Long userId);
 
     List<User> findByDateOfLeavingAndAuditHistoryDTO_DeletedFalse(LocalDate dateOfLeaving);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<User> findByPostalCodeAndAuditHistoryDTO_DeletedFalse(Integer postalCode);
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The select and count JPQL of one search shape with named parameters :p0..:pN in the shape's canonical order.
+ * Both strings are fixed for the shape, so Hibernate parses each once and reuses the plan for every later search.
+ */
+public final class CompiledSearchQuery<T> {
+
+    private final Class<T> entityClass;
+    private final String shape;
+    private final String selectJpql;
+    private final String countJpql;
+    private final String[] parameterNames;
+    private final Counter hits;
+
+    CompiledSearchQuery(Class<T> entityClass, String shape, String selectJpql, String countJpql,
+                        String[] parameterNames, Counter hits) {
+        this.entityClass = entityClass;
+        this.shape = shape;
+        this.selectJpql = selectJpql;
+        this.countJpql = countJpql;
+        this.parameterNames = parameterNames;
+        this.hits = hits;
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public String getSelectJpql() {
+        return selectJpql;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    List<T> list(EntityManager entityManager, Object[] arguments, int offset, int limit) {
+        TypedQuery<T> query = entityManager.createQuery(selectJpql, entityClass)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setFirstResult(offset)
+                .setMaxResults(limit);
+        bind(query, arguments);
+        return query.getResultList();
+    }
+
+    // Rows are read from the cursor in fetchSize batches, the caller owns the transaction and closes the stream
+    Stream<T> stream(EntityManager entityManager, Object[] arguments, int fetchSize) {
+        TypedQuery<T> query = entityManager.createQuery(selectJpql, entityClass)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+        bind(query, arguments);
+        return query.getResultStream();
+    }
+
+    long count(EntityManager entityManager, Object[] arguments) {
+        TypedQuery<Long> query = entityManager.createQuery(countJpql, Long.class);
+        bind(query, arguments);
+        return query.getSingleResult();
+    }
+
+    private void bind(TypedQuery<?> query, Object[] arguments) {
+        for (int i = 0; i < parameterNames.length; i++) {
+            query.setParameter(parameterNames[i], arguments[i]);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.entity.ImageObject;
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
+import com.ubaidsample.h2.repository.ImageObjectRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectArgs;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Reference counts for profile images stored under their content digest, so identical files are stored once.
+ * Every change runs in a short transaction under a row lock per digest, the object store is never written or
+ * removed from while the lock is held: a reference is taken first, the content is written if it is not stored yet,
+ * and a second transaction marks it stored. The last reference queues the removal in the image outbox, which marks
+ * the row as being removed, removes the objects and then the row.
+ */
+@Slf4j
+@Service
+public class ContentAddressedImageStore {
+
+    private static final long REMOVAL_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final ImageObjectRepository repository;
+    private final EntityManager entityManager;
+    private final MinioClient minioClient;
+    private final MinioMetrics minioMetrics;
+    private final ImageOutbox imageOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate joiningTransactionTemplate;
+    private final Duration deleteLease;
+    private final Counter storedUploads;
+    private final Counter deduplicatedUploads;
+
+    public ContentAddressedImageStore(ImageObjectRepository repository, EntityManager entityManager,
+                                      MinioClient minioClient, MinioMetrics minioMetrics, ImageOutbox imageOutbox,
+                                      PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                      @Value("${app.image.content-addressed.delete-lease:30s}") Duration deleteLease) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.minioClient = minioClient;
+        this.minioMetrics = minioMetrics;
+        this.imageOutbox = imageOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.joiningTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.deleteLease = deleteLease;
+        this.storedUploads = uploads(meterRegistry, "stored");
+        this.deduplicatedUploads = uploads(meterRegistry, "deduplicated");
+    }
+
+    /**
+     * Adds a reference to the object and returns its renditions. {@code store} writes the object and returns
+     * its renditions, it runs outside any transaction and only while the content is not stored yet; concurrent
+     * uploads of new content may both write it, which stores the same bytes twice. {@code onAcquired} runs in the
+     * transaction that commits the reference, e.g. to write the outbox guard that releases it again if no user comes
+     * to hold it, which also covers a failed {@code store} or a process that dies before the content is marked stored.
+     * Content that is being removed is waited for, and written again once the removal is done.
+     */
+    public Map<String, String> acquire(String bucket, String objectName, long sizeBytes,
+                                       Supplier<Map<String, String>> store, Runnable onAcquired) {
+        ImageObject acquired;
+        while (true) {
+            createIfAbsent(bucket, objectName, sizeBytes);
+            LocalDateTime now = LocalDateTime.now();
+            acquired = transactionTemplate.execute(status -> repository.findForUpdate(objectName)
+                    .map(object -> {
+                        if (isBeingRemoved(object, now)) {
+                            return object;
+                        }
+                        // A removal that outlived its lease is taken over, its tombstone already marked the content unstored
+                        object.setDeletingUntil(null);
+                        // The reference keeps a purge or the reaper off the objects while they are written
+                        object.setRefCount(object.getRefCount() + 1);
+                        onAcquired.run();
+                        return object;
+                    })
+                    .orElse(null));
+            if (acquired == null) {
+                // The last reference was released while this upload waited for the lock, start over with a new row
+                log.debug("Image object row for {} removed concurrently", objectName);
+            } else if (acquired.getDeletingUntil() != null) {
+                // Writing now could lose the content to the removal, wait until it has removed the objects
+                log.debug("Image {} is being removed, waiting for the removal", objectName);
+                LockSupport.parkNanos(REMOVAL_POLL_NANOS);
+            } else {
+                break;
+            }
+        }
+        if (acquired.isStored()) {
+            log.info("Image {} already stored, skipping the upload", objectName);
+            deduplicatedUploads.increment();
+            return acquired.getRenditions();
+        }
+        Map<String, String> renditions = store.get();
+        transactionTemplate.executeWithoutResult(status -> repository.findForUpdate(objectName)
+                .ifPresent(object -> {
+                    object.setRenditions(renditions);
+                    object.setStored(true);
+                }));
+        storedUploads.increment();
+        return renditions;
+    }
+
+    /**
+     * Drops a reference, queueing the removal of the object and its renditions with the last one. Returns false for
+     * an object that is not content-addressed, which the caller removes itself. Runs in the caller's transaction if
+     * there is one, so the outbox entry that asked for the release is deleted in the same commit and never releases twice.
+     */
+    public boolean release(String objectName) {
+        return Boolean.TRUE.equals(joiningTransactionTemplate.execute(status -> repository.findForUpdate(objectName)
+                .map(object -> {
+                    object.setRefCount(Math.max(0, object.getRefCount() - 1));
+                    if (object.getRefCount() == 0) {
+                        // The row stays at zero until the purge, which skips content an upload referenced again
+                        imageOutbox.enqueue(ImageOutboxEntry.Operation.PURGE, object.getBucket(),
+                                object.getObjectName(), object.getRenditions());
+                    }
+                    return true;
+                })
+                .orElse(false)));
+    }
+
+    /**
+     * Removes {@code objectNames}, objects stored under the digest of {@code objectName}, unless an upload references
+     * the content by the time the row lock is held. The row is marked as being removed and committed first, the
+     * objects are removed without the lock, and a second transaction deletes the row, or keeps it for a retry when
+     * some of them could not be removed. Returns the names that were removed, empty when still referenced or when
+     * another removal is already running.
+     */
+    public Optional<List<String>> removeUnreferenced(String bucket, String objectName, List<String> objectNames) {
+        // A row to lock even for content that has none, so an upload of it waits for the removal
+        createIfAbsent(bucket, objectName, 0);
+        LocalDateTime now = LocalDateTime.now();
+        // Millisecond precision survives the round trip through the column, the second transaction compares it
+        LocalDateTime deletingUntil = now.plus(deleteLease).truncatedTo(ChronoUnit.MILLIS);
+        boolean marked = Boolean.TRUE.equals(transactionTemplate.execute(status -> repository.findForUpdate(objectName)
+                .filter(object -> object.getRefCount() == 0 && !isBeingRemoved(object, now))
+                .map(object -> {
+                    object.setStored(false);
+                    object.setDeletingUntil(deletingUntil);
+                    return true;
+                })
+                .orElse(false)));
+        if (!marked) {
+            return Optional.empty();
+        }
+        List<String> removed = objectNames.stream()
+                .filter(name -> remove(bucket, name))
+                .toList();
+        transactionTemplate.executeWithoutResult(status -> repository.findForUpdate(objectName)
+                // Not when an upload took over the row after the lease ran out
+                .filter(object -> deletingUntil.equals(object.getDeletingUntil()))
+                .ifPresent(object -> {
+                    if (removed.size() == objectNames.size()) {
+                        repository.delete(object);
+                    } else {
+                        // Unstored at zero references, the retry or the reaper removes what is left
+                        object.setDeletingUntil(null);
+                    }
+                }));
+        return Optional.of(removed);
+    }
+
+    private static boolean isBeingRemoved(ImageObject object, LocalDateTime now) {
+        return object.getDeletingUntil() != null && object.getDeletingUntil().isAfter(now);
+    }
+
+    // The row is the lock, a concurrent upload of the same content may have created it first
+    private void createIfAbsent(String bucket, String objectName, long sizeBytes) {
+        if (repository.existsById(objectName)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.persist(new ImageObject(objectName, bucket, 0, sizeBytes, false, Map.of(), LocalDateTime.now(), null));
+                entityManager.flush();
+            });
+        } catch (ConstraintViolationException | DataIntegrityViolationException ex) {
+            // The entity manager is not behind a repository proxy, so the duplicate key arrives untranslated
+            log.debug("Image object row for {} created concurrently", objectName);
+        }
+    }
+
+    private boolean remove(String bucket, String objectName) {
+        Timer.Sample sample = minioMetrics.start();
+        try {
+            minioClient.removeObject(
+                    RemoveObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(objectName)
+                            .build()
+            );
+            minioMetrics.success(sample, MinioMetrics.REMOVE_OBJECT);
+            return true;
+        } catch (Exception ex) {
+            minioMetrics.failure(sample, MinioMetrics.REMOVE_OBJECT);
+            // Log warning but continue, the outbox or the reaper retries the object
+            log.warn("Warning: Could not delete unreferenced image {}: {}", objectName, ex.getMessage());
+            return false;
+        }
+    }
+
+    // Content-addressed uploads by whether the content was written or already stored
+    private static Counter uploads(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("image.content.uploads")
+                .description("Content-addressed profile image uploads by whether the content was already stored")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
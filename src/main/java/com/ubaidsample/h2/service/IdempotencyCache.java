@@ -0,0 +1,138 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Answers retried creates per idempotency key without touching the database.
+ * Committed results are cached for a TTL, and requests arriving while the first one with the same key
+ * is still running wait for its result instead of racing it into the unique constraint.
+ */
+@Slf4j
+@Component
+public class IdempotencyCache {
+
+    private final Cache<String, UserResponseDTO> completed;
+    private final ConcurrentMap<String, CompletableFuture<UserResponseDTO>> inFlight = new ConcurrentHashMap<>();
+    private final Duration inFlightTimeout;
+    private final Counter cachedRequests;
+    private final Counter joinedRequests;
+    private final Counter executedRequests;
+    private final Counter failedRequests;
+
+    public IdempotencyCache(MeterRegistry meterRegistry,
+                            @Value("${app.user.idempotency.ttl:10m}") Duration ttl,
+                            @Value("${app.user.idempotency.max-size:100000}") long maxSize,
+                            @Value("${app.user.idempotency.in-flight-timeout:30s}") Duration inFlightTimeout) {
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.inFlightTimeout = inFlightTimeout;
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotencyCache");
+        this.cachedRequests = requests(meterRegistry, "cached");
+        this.joinedRequests = requests(meterRegistry, "joined");
+        this.executedRequests = requests(meterRegistry, "executed");
+        this.failedRequests = requests(meterRegistry, "failed");
+    }
+
+    /**
+     * Returns the cached result for the key, or the result of the request already running with it,
+     * otherwise runs {@code create}, which must return only after its transaction has committed.
+     */
+    public UserResponseDTO get(String key, Supplier<UserResponseDTO> create) {
+        UserResponseDTO cached = completed.getIfPresent(key);
+        if (cached != null) {
+            cachedRequests.increment();
+            log.info("Returning cached result for idempotencyKey={}", key);
+            return cached;
+        }
+        CompletableFuture<UserResponseDTO> own = new CompletableFuture<>();
+        CompletableFuture<UserResponseDTO> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            joinedRequests.increment();
+            return await(key, running, create);
+        }
+        try {
+            UserResponseDTO result = create.get();
+            executedRequests.increment();
+            // Cached before the in-flight entry goes away, so a later retry never falls through to the database
+            completed.put(key, result);
+            own.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            failedRequests.increment();
+            own.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    // The user changed or is gone, the next retry reads it again once the change is committed
+    public void invalidate(String key) {
+        if (key == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            completed.invalidate(key);
+            return;
+        }
+        // Dropped before the commit, a retry would cache the old row again, a rollback keeps the entry
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                completed.invalidate(key);
+            }
+        });
+    }
+
+    // Creates by how they were answered: cached result, joined in-flight request, or executed against the database
+    private static Counter requests(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("user.idempotency.requests")
+                .description("Idempotent creates by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private UserResponseDTO await(String key, CompletableFuture<UserResponseDTO> running, Supplier<UserResponseDTO> create) {
+        log.info("Waiting for in-flight request with idempotencyKey={}", key);
+        try {
+            return running.get(inFlightTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            // Same key, same outcome: the duplicate fails the way the first request did
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            // The first request is stuck, let the database and its unique constraint decide
+            log.warn("In-flight request with idempotencyKey={} did not finish in {}", key, inFlightTimeout);
+            return create.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for idempotencyKey=" + key, ex);
+        }
+    }
+}
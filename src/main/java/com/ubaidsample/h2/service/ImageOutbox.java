@@ -0,0 +1,68 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
+import com.ubaidsample.h2.entity.ImageOutboxEntry.Operation;
+import com.ubaidsample.h2.repository.ImageOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes object store operations into the image_outbox table in the caller's transaction (or one of its own when
+ * there is none), so they are committed or rolled back together with the change that causes them.
+ * ImageOutboxDispatcher runs them once committed.
+ * <p>
+ * A guard undoes an upload that never comes to be referenced: it is written before the objects are stored and only
+ * becomes due after guard-delay, and the transaction that saves the new object name cancels it.
+ */
+@Service
+public class ImageOutbox {
+
+    private final ImageOutboxRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration guardDelay;
+
+    public ImageOutbox(ImageOutboxRepository repository, PlatformTransactionManager transactionManager,
+                       @Value("${app.image.outbox.guard-delay:1h}") Duration guardDelay) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.guardDelay = guardDelay;
+    }
+
+    public void enqueue(Operation operation, String bucket, String objectName, Map<String, String> renditions) {
+        transactionTemplate.executeWithoutResult(status -> repository.save(
+                new ImageOutboxEntry(operation, bucket, objectName, renditions, null, LocalDateTime.now())));
+    }
+
+    // Returns the key the upload cancels the guard by
+    public String guard(Operation operation, String bucket, String objectName, Map<String, String> renditions) {
+        String guardKey = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status -> repository.save(new ImageOutboxEntry(
+                operation, bucket, objectName, renditions, guardKey, LocalDateTime.now().plus(guardDelay))));
+        return guardKey;
+    }
+
+    // False when the guard already ran, the upload took longer than guard-delay and its objects are gone
+    public boolean cancelGuard(String guardKey) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> repository.deleteByGuardKey(guardKey, LocalDateTime.now()) > 0));
+    }
+
+    // The upload failed, its objects go now instead of after guard-delay
+    public void fireGuard(String guardKey) {
+        transactionTemplate.executeWithoutResult(status ->
+                repository.rescheduleByGuardKey(guardKey, LocalDateTime.now()));
+    }
+}
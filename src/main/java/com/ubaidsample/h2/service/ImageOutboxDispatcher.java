@@ -0,0 +1,240 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
+import com.ubaidsample.h2.repository.ImageOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Runs due image_outbox entries in id order, up to batch-size per round: every release in its own transaction
+ * together with the deletion of its entry, so a reference is dropped exactly once, every purge under the row lock of
+ * its content, and all deletes of a round as one multi-object delete request per bucket. Deleting an object that is already gone succeeds, so a delete that is
+ * dispatched again after a crash does no harm. A failed entry is retried after a backoff that doubles per attempt.
+ * <p>
+ * Each round first claims its entries for claim-lease, so instances sharing the table never dispatch the same entry
+ * at once, and a release only counts while its round still holds the claim. Entries of a round that died are
+ * dispatched again once the lease runs out.
+ */
+@Slf4j
+@Service
+public class ImageOutboxDispatcher {
+
+    private final ImageOutboxRepository repository;
+    private final ContentAddressedImageStore imageStore;
+    private final MinioClient minioClient;
+    private final MinioMetrics minioMetrics;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration claimLease;
+
+    public ImageOutboxDispatcher(ImageOutboxRepository repository, ContentAddressedImageStore imageStore,
+                                 MinioClient minioClient, MinioMetrics minioMetrics, MeterRegistry meterRegistry,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.image.outbox.batch-size:100}") int batchSize,
+                                 @Value("${app.image.outbox.initial-backoff:1s}") Duration initialBackoff,
+                                 @Value("${app.image.outbox.max-backoff:10m}") Duration maxBackoff,
+                                 @Value("${app.image.outbox.claim-lease:5m}") Duration claimLease) {
+        this.repository = repository;
+        this.imageStore = imageStore;
+        this.minioClient = minioClient;
+        this.minioMetrics = minioMetrics;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.claimLease = claimLease;
+        Gauge.builder("image.outbox.entries", repository, ImageOutboxRepository::count)
+                .description("Outbox entries not dispatched yet, guards of uploads in progress included")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.image.outbox.poll-interval:1s}")
+    public void dispatch() {
+        try {
+            // A full round means more may be due
+            while (dispatchRound() == batchSize) {
+                log.debug("Outbox round was full, dispatching the next one");
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Image outbox dispatch failed: {}", ex.getMessage());
+        }
+    }
+
+    // Returns how many entries were due
+    int dispatchRound() {
+        String claim = UUID.randomUUID().toString();
+        int[] dueCount = {0};
+        List<ImageOutboxEntry> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = repository.findDueIds(now, Limit.of(batchSize));
+            dueCount[0] = ids.size();
+            if (ids.isEmpty() || repository.claim(ids, claim, now, now.plus(claimLease)) == 0) {
+                return List.of();
+            }
+            return repository.findByClaimOrderById(claim);
+        });
+        if (claimed.isEmpty()) {
+            return dueCount[0];
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<ImageOutboxEntry> deletes = new ArrayList<>();
+        for (ImageOutboxEntry entry : claimed) {
+            switch (entry.getOperation()) {
+                case RELEASE -> release(entry, deletes);
+                case PURGE -> purge(entry);
+                case DELETE -> deletes.add(entry);
+            }
+        }
+        deletes.stream()
+                .collect(Collectors.groupingBy(ImageOutboxEntry::getBucket))
+                .forEach(this::delete);
+        sample.stop(Timer.builder("image.outbox.round")
+                .description("One round of dispatching due outbox entries")
+                .register(meterRegistry));
+        return dueCount[0];
+    }
+
+    private void release(ImageOutboxEntry entry, List<ImageOutboxEntry> deletes) {
+        try {
+            // The entry is deleted first, its row lock keeps the claim until the reference is dropped with it
+            Boolean released = transactionTemplate.execute(status -> {
+                if (repository.deleteClaimed(List.of(entry.getId()), entry.getClaim()) == 0) {
+                    return null;
+                }
+                if (!imageStore.release(entry.getObjectName())) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+            if (released == null) {
+                log.warn("Warning: Outbox claim on {} expired, leaving it to the round that holds it now", entry.getId());
+            } else if (released) {
+                dispatched(entry, "success");
+            } else {
+                // Not content-addressed, the object and its renditions belonged to this user alone
+                deletes.add(entry);
+            }
+        } catch (RuntimeException ex) {
+            retry(List.of(entry), ex.getMessage());
+        }
+    }
+
+    private void purge(ImageOutboxEntry entry) {
+        List<String> objectNames = new ArrayList<>();
+        objectNames.add(entry.getObjectName());
+        objectNames.addAll(entry.getRenditions().values());
+        try {
+            // Empty when an upload referenced the content again or another removal runs, nothing is left to this one
+            List<String> removed = imageStore.removeUnreferenced(entry.getBucket(), entry.getObjectName(), objectNames)
+                    .orElse(objectNames);
+            if (removed.size() < objectNames.size()) {
+                retry(List.of(entry), "Could not delete " + (objectNames.size() - removed.size()) + " of "
+                        + objectNames.size() + " objects");
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status ->
+                    repository.deleteClaimed(List.of(entry.getId()), entry.getClaim()));
+            dispatched(entry, "success");
+        } catch (RuntimeException ex) {
+            retry(List.of(entry), ex.getMessage());
+        }
+    }
+
+    private void delete(String bucket, List<ImageOutboxEntry> entries) {
+        Map<String, ImageOutboxEntry> entryByObject = new LinkedHashMap<>();
+        for (ImageOutboxEntry entry : entries) {
+            entryByObject.put(entry.getObjectName(), entry);
+            entry.getRenditions().values().forEach(rendition -> entryByObject.put(rendition, entry));
+        }
+        Set<ImageOutboxEntry> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        String error = null;
+        Timer.Sample sample = minioMetrics.start();
+        try {
+            // Lazy, the request is sent while the errors are iterated
+            Iterable<Result<DeleteError>> errors = minioClient.removeObjects(
+                    RemoveObjectsArgs.builder()
+                            .bucket(bucket)
+                            .objects(entryByObject.keySet().stream().map(DeleteObject::new).toList())
+                            .build()
+            );
+            for (Result<DeleteError> result : errors) {
+                DeleteError deleteError = result.get();
+                failed.add(entryByObject.get(deleteError.objectName()));
+                error = deleteError.objectName() + ": " + deleteError.message();
+            }
+            minioMetrics.success(sample, MinioMetrics.REMOVE_OBJECTS);
+        } catch (Exception ex) {
+            minioMetrics.failure(sample, MinioMetrics.REMOVE_OBJECTS);
+            failed.addAll(entries);
+            error = ex.getMessage();
+        }
+        List<ImageOutboxEntry> deleted = entries.stream().filter(entry -> !failed.contains(entry)).toList();
+        if (!deleted.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> repository.deleteClaimed(
+                    deleted.stream().map(ImageOutboxEntry::getId).toList(), deleted.get(0).getClaim()));
+            deleted.forEach(entry -> dispatched(entry, "success"));
+        }
+        if (!failed.isEmpty()) {
+            retry(List.copyOf(failed), error);
+        }
+    }
+
+    private void retry(List<ImageOutboxEntry> entries, String error) {
+        String lastError = error == null ? null : error.substring(0, Math.min(error.length(), 500));
+        transactionTemplate.executeWithoutResult(status -> {
+            for (ImageOutboxEntry entry : entries) {
+                LocalDateTime availableAt = LocalDateTime.now().plus(backoff(entry.getAttempts() + 1));
+                repository.reschedule(entry.getId(), entry.getClaim(), availableAt, lastError);
+                dispatched(entry, "retry");
+                log.warn("Warning: Outbox {} of {} failed (attempt {}), retrying at {}: {}", entry.getOperation(),
+                        entry.getObjectName(), entry.getAttempts() + 1, availableAt, error);
+            }
+        });
+    }
+
+    // initial-backoff doubled per failed attempt, up to max-backoff
+    private Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void dispatched(ImageOutboxEntry entry, String outcome) {
+        Counter.builder("image.outbox.dispatched")
+                .description("Outbox entries run against the object store")
+                .tag("operation", entry.getOperation().name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Downscaled copies of a profile image, one per configured size, e.g. thumb:48,small:160,medium:480 (longest edge in px).
+ * The original is decoded once, each size is scaled and encoded on the bounded rendition pool and stored as its own object.
+ * Sizes the original is not larger than are skipped, the original itself serves them.
+ */
+@Slf4j
+@Service
+public class ImageRenditionService {
+
+    private final MinioClient minioClient;
+    private final MinioMetrics minioMetrics;
+    private final TaskExecutor renditionExecutor;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Map<String, Integer> sizes;
+    private final float jpegQuality;
+    private final long maxSourcePixels;
+
+    public ImageRenditionService(MinioClient minioClient, MinioMetrics minioMetrics,
+                                 @Qualifier("renditionExecutor") TaskExecutor renditionExecutor,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.image.renditions.enabled:true}") boolean enabled,
+                                 @Value("${app.image.renditions.sizes:thumb:48,small:160,medium:480}") String sizes,
+                                 @Value("${app.image.renditions.jpeg-quality:0.85}") float jpegQuality,
+                                 @Value("${app.image.renditions.max-source-pixels:25000000}") long maxSourcePixels) {
+        this.minioClient = minioClient;
+        this.minioMetrics = minioMetrics;
+        this.renditionExecutor = renditionExecutor;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.sizes = parseSizes(sizes);
+        this.jpegQuality = jpegQuality;
+        this.maxSourcePixels = maxSourcePixels;
+        // Decoding and encoding stay in memory, no temporary files per image
+        ImageIO.setUseCache(false);
+    }
+
+    public boolean isEnabled() {
+        return enabled && !sizes.isEmpty();
+    }
+
+    public Set<String> sizes() {
+        return sizes.keySet();
+    }
+
+    /**
+     * Stores a rendition of {@code original} for every configured size it is larger than and returns their
+     * object names per size. A size that fails is logged and left out, requests for it fall back to the original.
+     */
+    public Map<String, String> storeRenditions(String bucket, byte[] original, String contentType,
+                                               UnaryOperator<String> objectNameForSize) {
+        BufferedImage source;
+        try {
+            source = decode(original);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Could not decode image for renditions: {}", ex.getMessage());
+            return Map.of();
+        }
+        if (source == null) {
+            return Map.of();
+        }
+        int longestEdge = Math.max(source.getWidth(), source.getHeight());
+        Map<String, CompletableFuture<String>> pending = new LinkedHashMap<>();
+        sizes.forEach((size, maxEdge) -> {
+            if (maxEdge < longestEdge) {
+                Supplier<String> rendition =
+                        () -> storeRendition(bucket, source, maxEdge, contentType, objectNameForSize.apply(size), size);
+                try {
+                    pending.put(size, CompletableFuture.supplyAsync(rendition, renditionExecutor));
+                } catch (TaskRejectedException ex) {
+                    // Pool and queue are full, the uploading thread encodes this one itself
+                    pending.put(size, CompletableFuture.completedFuture(rendition.get()));
+                }
+            }
+        });
+        Map<String, String> stored = new LinkedHashMap<>();
+        pending.forEach((size, future) -> {
+            String objectName = future.join();
+            if (objectName != null) {
+                stored.put(size, objectName);
+            }
+        });
+        return Collections.unmodifiableMap(stored);
+    }
+
+    private String storeRendition(String bucket, BufferedImage source, int maxEdge, String contentType,
+                                  String objectName, String size) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            byte[] encoded = encode(scale(source, maxEdge), contentType);
+            Timer.Sample putSample = minioMetrics.start();
+            try {
+                minioClient.putObject(
+                        PutObjectArgs.builder()
+                                .bucket(bucket)
+                                .object(objectName)
+                                .stream(new ByteArrayInputStream(encoded), encoded.length, -1)
+                                .contentType(contentType)
+                                .build()
+                );
+                minioMetrics.success(putSample, MinioMetrics.PUT_OBJECT);
+                minioMetrics.uploaded(encoded.length, true);
+            } catch (Exception ex) {
+                minioMetrics.failure(putSample, MinioMetrics.PUT_OBJECT);
+                minioMetrics.uploaded(encoded.length, false);
+                throw ex;
+            }
+            sample.stop(timer(size, "success"));
+            return objectName;
+        } catch (Exception ex) {
+            sample.stop(timer(size, "error"));
+            log.warn("Could not store {} rendition {}: {}", size, objectName, ex.getMessage());
+            return null;
+        }
+    }
+
+    // Reads the dimensions from the header first, so an image that would take too much memory is never decoded
+    private BufferedImage decode(byte[] original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxSourcePixels) {
+                    log.warn("Skipping renditions for a {}x{} image", reader.getWidth(0), reader.getHeight(0));
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Halving steps down to the target keep bilinear filtering sharp at large ratios
+    static BufferedImage scale(BufferedImage source, int maxEdge) {
+        double ratio = (double) maxEdge / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    // Same format as the original: PNG keeps transparency, JPEG is re-encoded at the configured quality
+    byte[] encode(BufferedImage image, String contentType) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!MediaType.IMAGE_JPEG_VALUE.equals(contentType)) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private Timer timer(String size, String outcome) {
+        return Timer.builder("image.rendition")
+                .description("Scaling, encoding and storing one rendition of a profile image")
+                .tag("size", size)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    // "thumb:48,small:160" in the configured order
+    private static Map<String, Integer> parseSizes(String sizes) {
+        Map<String, Integer> parsed = new LinkedHashMap<>();
+        for (String entry : sizes.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || Integer.parseInt(parts[1].trim()) <= 0) {
+                throw new IllegalArgumentException("app.image.renditions.sizes entries must be name:pixels, got " + entry);
+            }
+            parsed.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return Collections.unmodifiableMap(parsed);
+    }
+}
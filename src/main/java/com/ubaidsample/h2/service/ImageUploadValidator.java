@@ -0,0 +1,198 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.exception.FileTooLargeException;
+import com.ubaidsample.h2.exception.InvalidFileTypeException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Upload checks that run before any MinIO I/O: declared MIME type and file extension against sets built once,
+ * and the real format and dimensions sniffed from the image header (JPEG SOI and SOF segment, PNG signature and IHDR),
+ * without decoding any pixels. The stream is reset afterwards, so the same bytes go on to the object store.
+ */
+@Component
+public class ImageUploadValidator {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final String[] EXTENSIONS = {".jpg", ".jpeg", ".png"};
+
+    // Width and height of an image in the format it actually is
+    public record ImageHeader(String contentType, int width, int height) {}
+
+    private final Set<String> allowedTypes;
+    private final long maxPixels;
+    private final int maxHeaderBytes;
+
+    public ImageUploadValidator(@Value("${app.upload.allowed-types}") String allowedTypes,
+                                @Value("${app.upload.max-image-pixels:25000000}") long maxPixels,
+                                @Value("${app.upload.max-header-size:256KB}") DataSize maxHeaderSize) {
+        this.allowedTypes = Arrays.stream(allowedTypes.split(","))
+                .map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.maxPixels = maxPixels;
+        this.maxHeaderBytes = (int) maxHeaderSize.toBytes();
+    }
+
+    public void validateContentType(String contentType) {
+        if (contentType == null || !allowedTypes.contains(contentType)) {
+            throw new InvalidFileTypeException("Only JPEG and PNG files are allowed");
+        }
+    }
+
+    // Case-insensitive suffix match, no lower-cased copy or regex per call
+    public void validateFileName(String originalName) {
+        if (originalName != null) {
+            for (String extension : EXTENSIONS) {
+                if (originalName.regionMatches(true, originalName.length() - extension.length(),
+                        extension, 0, extension.length())) {
+                    return;
+                }
+            }
+        }
+        throw new InvalidFileTypeException("File extension must be .jpg, .jpeg, or .png");
+    }
+
+    /**
+     * Reads the header at the start of {@code is}, which must support mark/reset, checks that the content is
+     * the declared type and not over the pixel limit, and resets the stream to its first byte.
+     */
+    public ImageHeader inspect(InputStream is, String declaredType) throws IOException {
+        is.mark(maxHeaderBytes);
+        ImageHeader header;
+        try {
+            header = readHeader(new HeaderInput(is, maxHeaderBytes));
+        } catch (EOFException ex) {
+            throw new InvalidFileTypeException("Could not read the image header of the " + declaredType + " file");
+        }
+        is.reset();
+        if (header == null || !header.contentType().equals(declaredType)) {
+            throw new InvalidFileTypeException("File content does not match the declared type " + declaredType);
+        }
+        if ((long) header.width() * header.height() > maxPixels) {
+            throw new FileTooLargeException("Image dimensions " + header.width() + "x" + header.height()
+                    + " exceed the allowed limit of " + maxPixels + " pixels");
+        }
+        return header;
+    }
+
+    // Null for content that is neither JPEG nor PNG
+    static ImageHeader readHeader(HeaderInput in) throws IOException {
+        int first = in.read();
+        int second = in.read();
+        if (first == 0xFF && second == 0xD8) {
+            return readJpegHeader(in);
+        }
+        if (first == (PNG_SIGNATURE[0] & 0xFF) && second == PNG_SIGNATURE[1]) {
+            return readPngHeader(in);
+        }
+        return null;
+    }
+
+    // Signature, then the IHDR chunk, which the format requires to come first
+    private static ImageHeader readPngHeader(HeaderInput in) throws IOException {
+        for (int i = 2; i < PNG_SIGNATURE.length; i++) {
+            if (in.read() != (PNG_SIGNATURE[i] & 0xFF)) {
+                return null;
+            }
+        }
+        in.readInt();
+        if (in.readInt() != 0x49484452) {
+            return null;
+        }
+        int width = in.readInt();
+        int height = in.readInt();
+        return width > 0 && height > 0 ? new ImageHeader(MediaType.IMAGE_PNG_VALUE, width, height) : null;
+    }
+
+    // Walks the marker segments (APPn, DQT, DHT...) up to the first start-of-frame, which holds the dimensions
+    private static ImageHeader readJpegHeader(HeaderInput in) throws IOException {
+        while (true) {
+            if (in.read() != 0xFF) {
+                return null;
+            }
+            int marker = in.read();
+            // Fill bytes before a marker
+            while (marker == 0xFF) {
+                marker = in.read();
+            }
+            // Standalone markers without a length
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+            // Scan data or end of image before any frame header
+            if (marker == 0xD9 || marker == 0xDA) {
+                return null;
+            }
+            int length = in.readShort();
+            if (length < 2) {
+                return null;
+            }
+            // SOF0-SOF15, except DHT (C4), JPG (C8) and DAC (CC) which share the range
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                in.read();
+                int height = in.readShort();
+                int width = in.readShort();
+                return width > 0 && height > 0 ? new ImageHeader(MediaType.IMAGE_JPEG_VALUE, width, height) : null;
+            }
+            in.skip(length - 2);
+        }
+    }
+
+    // Big-endian reads over the first maxBytes of a stream, running past either end is an EOFException
+    static final class HeaderInput {
+
+        private final InputStream in;
+        private final int maxBytes;
+        private int position;
+
+        HeaderInput(InputStream in, int maxBytes) {
+            this.in = in;
+            this.maxBytes = maxBytes;
+        }
+
+        int read() throws IOException {
+            if (position++ >= maxBytes) {
+                throw new EOFException("Image header is longer than " + maxBytes + " bytes");
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Image header is truncated");
+            }
+            return b;
+        }
+
+        int readShort() throws IOException {
+            return (read() << 8) | read();
+        }
+
+        int readInt() throws IOException {
+            return (readShort() << 16) | readShort();
+        }
+
+        void skip(int n) throws IOException {
+            if (position + (long) n > maxBytes) {
+                throw new EOFException("Image header is longer than " + maxBytes + " bytes");
+            }
+            in.skipNBytes(n);
+            position += n;
+        }
+    }
+}
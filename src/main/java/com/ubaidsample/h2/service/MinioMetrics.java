@@ -0,0 +1,62 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency of each MinIO call as minio.operation{operation, outcome} and the bytes of every upload
+ * as minio.upload.size{outcome}, outcome being success or error.
+ */
+@Component
+public class MinioMetrics {
+
+    public static final String PUT_OBJECT = "putObject";
+    public static final String COPY_OBJECT = "copyObject";
+    public static final String REMOVE_OBJECT = "removeObject";
+    public static final String REMOVE_OBJECTS = "removeObjects";
+    public static final String GET_PRESIGNED_OBJECT_URL = "getPresignedObjectUrl";
+
+    private final MeterRegistry meterRegistry;
+
+    public MinioMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void success(Timer.Sample sample, String operation) {
+        sample.stop(timer(operation, "success"));
+    }
+
+    public void failure(Timer.Sample sample, String operation) {
+        sample.stop(timer(operation, "error"));
+    }
+
+    public void uploaded(long bytes, boolean success) {
+        DistributionSummary.builder("minio.upload.size")
+                .description("Bytes sent to MinIO per profile image upload")
+                .baseUnit("bytes")
+                .tag("outcome", success ? "success" : "error")
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder("minio.operation")
+                .description("Latency of MinIO client calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
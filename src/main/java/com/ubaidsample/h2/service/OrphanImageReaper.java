@@ -0,0 +1,338 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.common.ProfileImageDTO;
+import com.ubaidsample.h2.entity.ImageObject;
+import com.ubaidsample.h2.exception.MinioOperationException;
+import com.ubaidsample.h2.repository.ImageObjectRepository;
+import com.ubaidsample.h2.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Removes objects from the image bucket that nothing references anymore: left behind by a failed removal,
+ * a hard-deleted user or an upload that failed between storing the object and saving its name.
+ * The bucket listing is walked in pages of batch-size objects, and each page is checked against the database in one
+ * query per naming scheme: user-{id}-... objects against the images of those users, sha256-... objects against
+ * the reference counts in image_objects. Objects younger than the grace period (uploads in progress) and names
+ * of neither scheme are never touched.
+ */
+@Slf4j
+@Service
+public class OrphanImageReaper {
+
+    private static final String USER_PREFIX = "user-";
+    private static final String CONTENT_PREFIX = "sha256-";
+    private static final int DIGEST_HEX_LENGTH = 64;
+
+    // Totals of one run
+    public record ReapResult(int scanned, int orphaned, int deleted, int failed, boolean dryRun) {}
+
+    private final MinioClient minioClient;
+    private final MinioMetrics minioMetrics;
+    private final UserRepository userRepository;
+    private final ImageObjectRepository imageObjectRepository;
+    private final ContentAddressedImageStore imageStore;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final String bucket;
+    private final int batchSize;
+    private final Duration gracePeriod;
+    private final long deleteIntervalNanos;
+    private final int maxDeletesPerRun;
+    private final boolean dryRun;
+    private final Counter scannedObjects;
+    private final Counter orphanedObjects;
+    private final Counter deletedObjects;
+    private final Counter failedObjects;
+
+    public OrphanImageReaper(MinioClient minioClient, MinioMetrics minioMetrics, UserRepository userRepository,
+                             ImageObjectRepository imageObjectRepository, ContentAddressedImageStore imageStore,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.image.reaper.enabled:true}") boolean enabled,
+                             @Value("${minio.bucket}") String bucket,
+                             @Value("${app.image.reaper.batch-size:1000}") int batchSize,
+                             @Value("${app.image.reaper.grace-period:24h}") Duration gracePeriod,
+                             @Value("${app.image.reaper.max-deletes-per-second:50}") double maxDeletesPerSecond,
+                             @Value("${app.image.reaper.max-deletes-per-run:10000}") int maxDeletesPerRun,
+                             @Value("${app.image.reaper.dry-run:false}") boolean dryRun) {
+        this.minioClient = minioClient;
+        this.minioMetrics = minioMetrics;
+        this.userRepository = userRepository;
+        this.imageObjectRepository = imageObjectRepository;
+        this.imageStore = imageStore;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.bucket = bucket;
+        this.batchSize = batchSize;
+        this.gracePeriod = gracePeriod;
+        this.deleteIntervalNanos = maxDeletesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / maxDeletesPerSecond) : 0;
+        this.maxDeletesPerRun = maxDeletesPerRun;
+        this.dryRun = dryRun;
+        this.scannedObjects = objects(meterRegistry, "scanned");
+        this.orphanedObjects = objects(meterRegistry, "orphaned");
+        this.deletedObjects = objects(meterRegistry, "deleted");
+        this.failedObjects = objects(meterRegistry, "failed");
+    }
+
+    @Scheduled(fixedDelayString = "${app.image.reaper.interval:1h}",
+            initialDelayString = "${app.image.reaper.initial-delay:10m}")
+    public void scheduledReap() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reap();
+        } catch (RuntimeException ex) {
+            // The next run starts over from the beginning of the bucket
+            log.warn("Orphan image reaper run failed: {}", ex.getMessage());
+        }
+    }
+
+    public ReapResult reap() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Run run = new Run(Instant.now().minus(gracePeriod));
+        String outcome = "success";
+        try {
+            Iterable<Result<Item>> listing = minioClient.listObjects(
+                    ListObjectsArgs.builder()
+                            .bucket(bucket)
+                            .recursive(true)
+                            .maxKeys(batchSize)
+                            .build()
+            );
+            List<String> batch = new ArrayList<>(batchSize);
+            for (Result<Item> result : listing) {
+                if (run.deleteLimitReached()) {
+                    break;
+                }
+                Item item = item(result);
+                if (item.isDir()) {
+                    continue;
+                }
+                run.scanned++;
+                if (item.lastModified().toInstant().isBefore(run.cutoff)) {
+                    batch.add(item.objectName());
+                }
+                if (batch.size() == batchSize) {
+                    reapBatch(batch, run);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty() && !run.deleteLimitReached()) {
+                reapBatch(batch, run);
+            }
+        } catch (RuntimeException ex) {
+            outcome = "error";
+            throw ex;
+        } finally {
+            sample.stop(Timer.builder("image.reaper.run")
+                    .description("One pass of the orphan image reaper over the bucket")
+                    .tag("outcome", outcome)
+                    .tag("dry_run", String.valueOf(dryRun))
+                    .register(meterRegistry));
+            scannedObjects.increment(run.scanned);
+            orphanedObjects.increment(run.orphaned);
+            deletedObjects.increment(run.deleted);
+            failedObjects.increment(run.failed);
+            log.info("Orphan image reaper {}: scanned {}, orphaned {}, deleted {}, failed {}",
+                    dryRun ? "dry run" : "run", run.scanned, run.orphaned, run.deleted, run.failed);
+        }
+        return new ReapResult(run.scanned, run.orphaned, run.deleted, run.failed, dryRun);
+    }
+
+    // One query per naming scheme for the whole page, then the unreferenced objects are removed
+    private void reapBatch(List<String> objectNames, Run run) {
+        Map<Long, List<String>> userObjects = new HashMap<>();
+        Map<String, List<String>> contentObjects = new HashMap<>();
+        for (String objectName : objectNames) {
+            Long userId = userId(objectName);
+            String contentObjectName = contentObjectName(objectName);
+            if (userId != null) {
+                userObjects.computeIfAbsent(userId, id -> new ArrayList<>()).add(objectName);
+            } else if (contentObjectName != null) {
+                contentObjects.computeIfAbsent(contentObjectName, name -> new ArrayList<>()).add(objectName);
+            }
+        }
+        if (!userObjects.isEmpty()) {
+            Set<String> referenced = new HashSet<>();
+            for (ProfileImageDTO image : userRepository.findProfileImagesByUserIdIn(userObjects.keySet())) {
+                referenced.add(image.objectName());
+                referenced.addAll(image.renditions().values());
+            }
+            reapUserObjects(userObjects.values().stream()
+                    .flatMap(List::stream)
+                    .filter(objectName -> !referenced.contains(objectName))
+                    .toList(), run);
+        }
+        if (!contentObjects.isEmpty()) {
+            Map<String, ImageObject> rows = imageObjectRepository.findAllById(contentObjects.keySet()).stream()
+                    .collect(Collectors.toMap(ImageObject::getObjectName, Function.identity()));
+            contentObjects.forEach((contentObjectName, names) -> {
+                ImageObject row = rows.get(contentObjectName);
+                if (row == null || row.getRefCount() == 0) {
+                    reapContentObjects(contentObjectName, names, run);
+                }
+            });
+        }
+    }
+
+    // One multi-object delete request for the orphans of a batch
+    private void reapUserObjects(List<String> objectNames, Run run) {
+        List<String> orphans = objectNames.subList(0, Math.min(objectNames.size(), run.remainingDeletes()));
+        if (orphans.isEmpty()) {
+            return;
+        }
+        run.orphaned += orphans.size();
+        if (dryRun) {
+            log.info("Dry run, would delete orphaned images {}", orphans);
+            return;
+        }
+        run.pace(orphans.size());
+        int failed = 0;
+        Timer.Sample sample = minioMetrics.start();
+        try {
+            // Lazy, the request is sent while the errors are iterated
+            Iterable<Result<DeleteError>> errors = minioClient.removeObjects(
+                    RemoveObjectsArgs.builder()
+                            .bucket(bucket)
+                            .objects(orphans.stream().map(DeleteObject::new).toList())
+                            .build()
+            );
+            for (Result<DeleteError> result : errors) {
+                DeleteError error = result.get();
+                failed++;
+                log.warn("Warning: Could not delete orphaned image {}: {}", error.objectName(), error.message());
+            }
+            minioMetrics.success(sample, MinioMetrics.REMOVE_OBJECTS);
+        } catch (Exception ex) {
+            minioMetrics.failure(sample, MinioMetrics.REMOVE_OBJECTS);
+            failed = orphans.size();
+            log.warn("Warning: Could not delete {} orphaned images: {}", orphans.size(), ex.getMessage());
+        }
+        run.deleted += orphans.size() - failed;
+        run.failed += failed;
+    }
+
+    // Removed through the row of the digest, an upload of the same content in the meantime keeps them
+    private void reapContentObjects(String contentObjectName, List<String> objectNames, Run run) {
+        // The objects of a digest are removed together with its row, one that does not fit the budget is left whole
+        if (objectNames.size() > run.remainingDeletes()) {
+            return;
+        }
+        run.orphaned += objectNames.size();
+        if (dryRun) {
+            log.info("Dry run, would delete orphaned images {}", objectNames);
+            return;
+        }
+        run.pace(objectNames.size());
+        imageStore.removeUnreferenced(bucket, contentObjectName, objectNames).ifPresentOrElse(
+                removed -> {
+                    run.deleted += removed.size();
+                    run.failed += objectNames.size() - removed.size();
+                },
+                () -> {
+                    run.orphaned -= objectNames.size();
+                    log.info("Image {} was referenced again or is being removed, keeping {}", contentObjectName, objectNames);
+                });
+    }
+
+    private Item item(Result<Item> result) {
+        try {
+            return result.get();
+        } catch (Exception ex) {
+            throw new MinioOperationException("Failed to list bucket " + bucket + " for orphaned images", ex);
+        }
+    }
+
+    // user-{id}-..., null for any other name
+    static Long userId(String objectName) {
+        if (!objectName.startsWith(USER_PREFIX)) {
+            return null;
+        }
+        int end = objectName.indexOf('-', USER_PREFIX.length());
+        if (end <= USER_PREFIX.length()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(objectName, USER_PREFIX.length(), end, 10);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    // sha256-{hex}[-{size}].{ext} to the name of its original, sha256-{hex}.{ext}; null for any other name
+    static String contentObjectName(String objectName) {
+        int digestEnd = CONTENT_PREFIX.length() + DIGEST_HEX_LENGTH;
+        int extension = objectName.lastIndexOf('.');
+        if (!objectName.startsWith(CONTENT_PREFIX) || extension < digestEnd) {
+            return null;
+        }
+        return objectName.substring(0, digestEnd) + objectName.substring(extension);
+    }
+
+    private static Counter objects(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("image.reaper.objects")
+                .description("Objects seen by the orphan image reaper, by what happened to them")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    // Counts of one run and the pacing of its deletes
+    private final class Run {
+
+        private final Instant cutoff;
+        private int scanned;
+        private int orphaned;
+        private int deleted;
+        private int failed;
+        private long nextDelete = System.nanoTime();
+
+        private Run(Instant cutoff) {
+            this.cutoff = cutoff;
+        }
+
+        private boolean deleteLimitReached() {
+            return remainingDeletes() <= 0;
+        }
+
+        private int remainingDeletes() {
+            return maxDeletesPerRun - orphaned;
+        }
+
+        // Holds deletes to max-deletes-per-second on average, so a large backlog does not flood the object store
+        private void pace(int deletes) {
+            long wait = nextDelete - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            nextDelete = Math.max(nextDelete, System.nanoTime()) + deletes * deleteIntervalNanos;
+        }
+    }
+}
@@ -8,67 +8,324 @@
 package com.ubaidsample.h2.service;
 
 import com.ubaidsample.h2.dto.common.GenericSpecification;
+import com.ubaidsample.h2.dto.common.KeysetCursor;
 import com.ubaidsample.h2.dto.request.PageRequestDTO;
 import com.ubaidsample.h2.dto.response.PageResponseDTO;
-import com.ubaidsample.h2.util.EntityUtil;
-import org.modelmapper.ModelMapper;
+import com.ubaidsample.h2.exception.InvalidFilterException;
+import com.ubaidsample.h2.util.EntityMetadata;
+import com.ubaidsample.h2.util.EntityMetadata.Attribute;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
-@Service
+/**
+ * Paginated search over one entity, thread-safe and meant to be created once per entity (see AppConfig).
+ * With a SearchQueryCompiler, searches run as the compiled JPQL of their shape, otherwise as a GenericSpecification.
+ */
 public class PaginationService<T, R> {
 
+    private static final String QUERY = "query";
+    private static final String COUNT = "count";
+    private static final String MAPPING = "mapping";
+
     private final JpaSpecificationExecutor<T> specRepository;
-    private final ModelMapper modelMapper;
-    private final Class<R> responseClass;
+    private final Function<T, R> mapper;
     private final Class<T> entityClass;
+    private final EntityMetadata<T> metadata;
     private final String idFieldName;
+    private final SearchCountCache countCache;
+    private final Function<String, ? extends Collection<?>> fullTextSearch;
+    private final SearchQueryCompiler queryCompiler;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+
+    public PaginationService(JpaSpecificationExecutor<T> specRepository, Function<T, R> mapper,
+                             Class<T> entityClass) {
+        this(specRepository, mapper, entityClass, null, null, null, null);
+    }
 
-    public PaginationService(JpaSpecificationExecutor<T> specRepository, ModelMapper modelMapper,
-                             Class<T> entityClass, Class<R> responseClass) {
+    /*
+     * countCache: backs approximate totals, may be null.
+     * fullTextSearch: resolves a search term to the matching ids, may be null or return null to search with LIKE.
+     * queryCompiler: compiles search shapes to reusable JPQL, may be null to build a Specification per search.
+     * meterRegistry: times the query, count and mapping stage of every search as search.stage, may be null.
+     */
+    public PaginationService(JpaSpecificationExecutor<T> specRepository, Function<T, R> mapper,
+                             Class<T> entityClass, SearchCountCache countCache,
+                             Function<String, ? extends Collection<?>> fullTextSearch,
+                             SearchQueryCompiler queryCompiler, MeterRegistry meterRegistry) {
         this.specRepository = specRepository;
-        this.modelMapper = modelMapper;
+        this.mapper = mapper;
         this.entityClass = entityClass;
-        this.responseClass = responseClass;
-        this.idFieldName = EntityUtil.getIdFieldName(entityClass);
+        this.metadata = EntityMetadata.of(entityClass);
+        this.idFieldName = metadata.getIdAttribute().path();
+        this.countCache = countCache;
+        this.fullTextSearch = fullTextSearch;
+        this.queryCompiler = queryCompiler;
+        this.meterRegistry = meterRegistry;
     }
 
     public PageResponseDTO<R> getPaginatedData(PageRequestDTO pageRequest) {
 
-        // Determine correct sort field
-        String sortField = pageRequest.getSortBy();
-        // If sortBy is missing or invalid → use auto-detected primary key
-        if (sortField == null || sortField.isBlank()) {
-            sortField = idFieldName;
+        validatePage(pageRequest);
+        Attribute sortAttribute = resolveSortAttribute(pageRequest);
+        String sortField = sortAttribute.path();
+        boolean ascending = pageRequest.getSortDir().equalsIgnoreCase("asc");
+        if (pageRequest.isCursor() || pageRequest.getAfter() != null) {
+            return getKeysetData(pageRequest, sortAttribute, ascending);
         }
-        // Validate: check that the field really exists in the entity
-        try {
-            entityClass.getDeclaredField(sortField);
-        } catch (NoSuchFieldException e) {
-            sortField = idFieldName;
+        if (queryCompiler != null) {
+            return getCompiledData(pageRequest, sortAttribute, ascending);
         }
-        Sort sort = pageRequest.getSortDir().equalsIgnoreCase("asc")
+        Sort sort = ascending
                 ? Sort.by(sortField).ascending()
                 : Sort.by(sortField).descending();
         Pageable pageable = PageRequest.of(pageRequest.getPage(), pageRequest.getSize(), sort);
-        Specification<T> spec = new GenericSpecification<>(pageRequest.getSearch(), pageRequest.getFilters());
-        Page<T> entityPage = specRepository.findAll(spec, pageable);
-        // Map Entity → ResponseDTO
-        List<R> mappedList = entityPage.getContent()
-                .stream()
-                .map(entity -> modelMapper.map(entity, responseClass))
-                .toList();
+        Specification<T> spec = new GenericSpecification<>(pageRequest.getSearch(), pageRequest.getFilters(),
+                resolveSearchIds(pageRequest.getSearch()), null, ascending);
+        if (!pageRequest.isWithTotal()) {
+            return getSliceData(spec, pageable, null);
+        }
+        if (pageRequest.isApproximateTotal() && countCache != null) {
+            long total = countCache.get(entityClass, pageRequest.getSearch(), pageRequest.getFilters(),
+                    () -> timed(COUNT, () -> specRepository.count(spec)));
+            return getSliceData(spec, pageable, total);
+        }
+        // Spring Data runs the count inside findAll, so this query stage includes it
+        Page<T> entityPage = timed(QUERY, () -> specRepository.findAll(spec, pageable));
+        return pageResponse(entityPage.getContent(), entityPage.getNumber(), entityPage.getSize(),
+                entityPage.getTotalElements());
+    }
+
+    // Reads one row more than the page instead of counting, the total is only filled in when a cached count is given
+    private PageResponseDTO<R> getSliceData(Specification<T> spec, Pageable pageable, Long cachedTotal) {
+        Slice<T> slice = timed(QUERY, () -> specRepository.findBy(spec, query -> query.slice(pageable)));
+        return sliceResponse(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext(), cachedTotal);
+    }
+
+    // Same modes as above on the compiled query of the search shape, only the values are bound per request
+    private PageResponseDTO<R> getCompiledData(PageRequestDTO pageRequest, Attribute sortAttribute, boolean ascending) {
+        SearchQueryCompiler.BoundSearchQuery<T> query = queryCompiler.bind(metadata, pageRequest.getFilters(),
+                pageRequest.getSearch(), resolveSearchIds(pageRequest.getSearch()), sortAttribute, ascending,
+                false, null);
+        int page = pageRequest.getPage();
+        int size = pageRequest.getSize();
+        int offset = Math.multiplyExact(page, size);
+        if (!pageRequest.isWithTotal() || (pageRequest.isApproximateTotal() && countCache != null)) {
+            List<T> rows = timed(QUERY, () -> query.list(offset, size + 1));
+            boolean hasNext = rows.size() > size;
+            Long cachedTotal = pageRequest.isWithTotal()
+                    ? countCache.get(entityClass, pageRequest.getSearch(), pageRequest.getFilters(),
+                            () -> timed(COUNT, query::count))
+                    : null;
+            return sliceResponse(hasNext ? rows.subList(0, size) : rows, page, size, hasNext, cachedTotal);
+        }
+        List<T> rows = timed(QUERY, () -> query.list(offset, size));
+        // Like Spring Data, a short page that is not past the end already tells the total
+        long total = rows.size() < size && (offset == 0 || !rows.isEmpty())
+                ? offset + rows.size()
+                : timed(COUNT, query::count);
+        return pageResponse(rows, page, size, total);
+    }
+
+    // Seeks past the cursor instead of skipping OFFSET rows and never counts, deep pages cost the same as page 0
+    private PageResponseDTO<R> getKeysetData(PageRequestDTO pageRequest, Attribute sortAttribute, boolean ascending) {
+        String sortField = sortAttribute.path();
+        KeysetCursor after = pageRequest.getAfter() == null ? null : KeysetCursor.decode(pageRequest.getAfter());
+        if (after != null && !after.sortField().equals(sortField)) {
+            throw new InvalidFilterException("Cursor was issued for sortBy " + after.sortField() + ", not " + sortField);
+        }
+        if (!sortField.equals(idFieldName) && sortAttribute.isNullable()) {
+            throw new InvalidFilterException("Cursor pagination needs a non-null sortBy field: " + sortField);
+        }
+        int size = pageRequest.getSize();
+        Collection<?> searchIds = resolveSearchIds(pageRequest.getSearch());
+        // One extra row tells whether a next page exists
+        List<T> rows;
+        if (queryCompiler != null) {
+            SearchQueryCompiler.BoundSearchQuery<T> query = queryCompiler.bind(metadata, pageRequest.getFilters(),
+                    pageRequest.getSearch(), searchIds, sortAttribute, ascending, true, after);
+            rows = timed(QUERY, () -> query.list(0, size + 1));
+        } else {
+            Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+            // The id breaks ties so the order, and therefore the cursor, is unique
+            Sort sort = sortField.equals(idFieldName)
+                    ? Sort.by(direction, idFieldName)
+                    : Sort.by(direction, sortField, idFieldName);
+            Specification<T> spec = new GenericSpecification<>(pageRequest.getSearch(), pageRequest.getFilters(),
+                    searchIds, after, ascending);
+            rows = timed(QUERY, () -> specRepository.findBy(spec, query -> query.sortBy(sort).limit(size + 1).all()));
+        }
+        boolean hasNext = rows.size() > size;
+        List<T> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            T last = pageRows.get(pageRows.size() - 1);
+            nextCursor = KeysetCursor.of(sortField, sortAttribute.read(last),
+                    metadata.getIdAttribute().read(last)).encode();
+        }
+        return new PageResponseDTO<>(
+                map(pageRows),
+                0,
+                size,
+                null,
+                null,
+                !hasNext,
+                hasNext,
+                nextCursor,
+                null
+        );
+    }
+
+    /**
+     * Every match of the search in sort order, ignoring page and size, read from a database cursor in fetchSize
+     * batches. Must be consumed and closed inside a transaction.
+     */
+    public Stream<T> stream(PageRequestDTO pageRequest, int fetchSize) {
+        Attribute sortAttribute = resolveSortAttribute(pageRequest);
+        boolean ascending = pageRequest.getSortDir().equalsIgnoreCase("asc");
+        Collection<?> searchIds = resolveSearchIds(pageRequest.getSearch());
+        if (queryCompiler != null) {
+            // Ordered like a cursor page, the id breaks ties
+            return queryCompiler.bind(metadata, pageRequest.getFilters(), pageRequest.getSearch(), searchIds,
+                    sortAttribute, ascending, true, null).stream(fetchSize);
+        }
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort sort = sortAttribute.path().equals(idFieldName)
+                ? Sort.by(direction, idFieldName)
+                : Sort.by(direction, sortAttribute.path(), idFieldName);
+        Specification<T> spec = new GenericSpecification<>(pageRequest.getSearch(), pageRequest.getFilters(),
+                searchIds, null, ascending);
+        return specRepository.findBy(spec, query -> query.sortBy(sort).stream());
+    }
+
+    // Fails with InvalidFilterException on unknown fields, operators or values without running the search
+    public void validate(PageRequestDTO pageRequest) {
+        validatePage(pageRequest);
+        if (queryCompiler != null) {
+            queryCompiler.bind(metadata, pageRequest.getFilters(), null, null, resolveSortAttribute(pageRequest),
+                    true, false, null);
+            return;
+        }
+        if (pageRequest.getFilters() != null) {
+            pageRequest.getFilters().forEach(f -> metadata.getAttribute(f.getField()).convert(f.getValue()));
+        }
+    }
+
+    private static void validatePage(PageRequestDTO pageRequest) {
+        if (pageRequest.getSize() < 1) {
+            throw new InvalidFilterException("Page size must be at least 1, got " + pageRequest.getSize());
+        }
+        if (pageRequest.getPage() < 0) {
+            throw new InvalidFilterException("Page number must not be negative, got " + pageRequest.getPage());
+        }
+    }
+
+    private Attribute resolveSortAttribute(PageRequestDTO pageRequest) {
+        // Determine correct sort field
+        String sortField = pageRequest.getSortBy();
+        // If sortBy is missing or invalid → use auto-detected primary key
+        if (sortField == null || sortField.isBlank()) {
+            return metadata.getIdAttribute();
+        }
+        // Validate: the field must exist in the entity, nested paths included, and be sortable
+        Attribute sortAttribute = metadata.findAttribute(sortField);
+        return sortAttribute == null || !sortAttribute.isSortable() ? metadata.getIdAttribute() : sortAttribute;
+    }
+
+    private PageResponseDTO<R> pageResponse(List<T> rows, int page, int size, long total) {
+        int totalPages = size == 0 ? 1 : (int) Math.ceil((double) total / size);
+        boolean hasNext = page + 1 < totalPages;
         return new PageResponseDTO<>(
-                mappedList,
-                entityPage.getNumber(),
-                entityPage.getSize(),
-                entityPage.getTotalElements(),
-                entityPage.getTotalPages(),
-                entityPage.isLast()
+                map(rows),
+                page,
+                size,
+                total,
+                totalPages,
+                !hasNext,
+                hasNext,
+                null,
+                null
+        );
+    }
+
+    private PageResponseDTO<R> sliceResponse(List<T> rows, int page, int size, boolean hasNext, Long cachedTotal) {
+        PageResponseDTO<R> response = new PageResponseDTO<>(
+                map(rows),
+                page,
+                size,
+                null,
+                null,
+                !hasNext,
+                hasNext,
+                null,
+                null
         );
+        if (cachedTotal != null) {
+            // A stale count must not contradict the rows that were just read
+            long before = page * (long) size;
+            long seen = before + rows.size() + (hasNext ? 1 : 0);
+            long total;
+            if (hasNext) {
+                total = Math.max(cachedTotal, seen);
+            } else if (!rows.isEmpty() || page == 0) {
+                total = seen;
+            } else {
+                // Past the end, the rows before this page were not read, so there are at most that many
+                total = Math.min(cachedTotal, before);
+            }
+            response.setTotalElements(total);
+            response.setTotalPages((int) Math.ceil((double) total / size));
+            response.setTotalApproximate(true);
+        }
+        return response;
+    }
+
+    // Map Entity → ResponseDTO
+    private List<R> map(List<T> rows) {
+        return timed(MAPPING, () -> rows.stream()
+                .map(mapper)
+                .toList());
+    }
+
+    private <V> V timed(String stage, Supplier<V> work) {
+        if (meterRegistry == null) {
+            return work.get();
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            V result = work.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(stageTimer(stage, outcome));
+        }
+    }
+
+    private Timer stageTimer(String stage, String outcome) {
+        return stageTimers.computeIfAbsent(stage + "|" + outcome, key -> Timer.builder("search.stage")
+                .description("Time spent per stage of a paginated search")
+                .tag("entity", entityClass.getSimpleName())
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private Collection<?> resolveSearchIds(String search) {
+        if (fullTextSearch == null || search == null || search.isBlank()) {
+            return null;
+        }
+        return fullTextSearch.apply(search);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Caches presigned GET URLs per bucket and object so a hot image is signed once per window.
+ * Entries expire after a fraction of the URL expiry, a cached URL always has time left to be used.
+ */
+@Component
+public class PresignedUrlCache {
+
+    private final Cache<String, String> cache;
+
+    public PresignedUrlCache(MeterRegistry meterRegistry,
+                             @Value("${minio.presigned-url-expiry}") int urlExpirySeconds,
+                             @Value("${minio.presigned-url-cache.ttl-fraction:0.5}") double ttlFraction,
+                             @Value("${minio.presigned-url-cache.max-size:10000}") long maxSize) {
+        if (ttlFraction <= 0 || ttlFraction >= 1) {
+            throw new IllegalArgumentException("minio.presigned-url-cache.ttl-fraction must be between 0 and 1");
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis((long) (urlExpirySeconds * 1000L * ttlFraction)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "presignedUrlCache");
+    }
+
+    public String get(String bucket, String objectName, Supplier<String> signer) {
+        return cache.get(key(bucket, objectName), key -> signer.get());
+    }
+
+    public void invalidate(String bucket, String objectName) {
+        cache.invalidate(key(bucket, objectName));
+    }
+
+    private static String key(String bucket, String objectName) {
+        return bucket + "/" + objectName;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.common.UploadJobStatus;
+import com.ubaidsample.h2.dto.response.UploadJobResponse;
+import com.ubaidsample.h2.exception.ResourceNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+@Slf4j
+@Service
+public class ProfileImageUploadJobService {
+
+    private final UserService userService;
+
+    private final TaskExecutor uploadExecutor;
+
+    private final ImageUploadValidator uploadValidator;
+
+    // Job snapshots are immutable and replaced on every status change
+    private final Map<String, UploadJobResponse> jobs = new ConcurrentHashMap<>();
+
+    @Value("${app.upload.async.job-retention:10m}")
+    private Duration jobRetention;
+
+    public ProfileImageUploadJobService(UserService userService,
+                                        @Qualifier("uploadExecutor") TaskExecutor uploadExecutor,
+                                        ImageUploadValidator uploadValidator) {
+        this.userService = userService;
+        this.uploadExecutor = uploadExecutor;
+        this.uploadValidator = uploadValidator;
+    }
+
+    public UploadJobResponse submit(Long id, MultipartFile file) throws IOException {
+        log.info("ProfileImageUploadJobService -> submit() called with ID: {}", id);
+        // Reject bad input while the client is still waiting, only the object store work is deferred
+        String contentType = file.getContentType();
+        String originalName = file.getOriginalFilename();
+        userService.validateProfileImage(contentType, originalName);
+        userService.requireExisting(id);
+        // Copy the bytes off the request, the multipart temp file is gone once the request completes
+        byte[] content = file.getBytes();
+        uploadValidator.inspect(new ByteArrayInputStream(content), contentType);
+        evictFinishedJobs();
+        UploadJobResponse job = new UploadJobResponse(UUID.randomUUID().toString(), id, UploadJobStatus.QUEUED,
+                null, null, LocalDateTime.now());
+        jobs.put(job.jobId(), job);
+        try {
+            uploadExecutor.execute(() -> run(job.jobId(), id, content, contentType, originalName));
+        } catch (TaskRejectedException ex) {
+            jobs.remove(job.jobId());
+            throw ex;
+        }
+        return job;
+    }
+
+    public UploadJobResponse findJob(Long id, String jobId) {
+        log.info("ProfileImageUploadJobService -> findJob() called with ID: {}, jobId: {}", id, jobId);
+        UploadJobResponse job = jobs.get(jobId);
+        if (job == null || !job.userId().equals(id)) {
+            throw new ResourceNotFoundException("No upload job found with id " + jobId + " for user " + id);
+        }
+        return job;
+    }
+
+    private void run(String jobId, Long id, byte[] content, String contentType, String originalName) {
+        try (InputStream is = new ByteArrayInputStream(content)) {
+            String imageUrl = userService.storeProfileImage(id, is, content.length, -1, contentType, originalName,
+                    status -> update(jobId, job -> job.withStatus(status)));
+            update(jobId, job -> job.completed(imageUrl));
+        } catch (Exception ex) {
+            log.warn("Upload job {} for user {} failed: {}", jobId, id, ex.getMessage());
+            update(jobId, job -> job.failed(ex.getMessage()));
+        }
+    }
+
+    private void update(String jobId, UnaryOperator<UploadJobResponse> change) {
+        jobs.computeIfPresent(jobId, (key, job) -> change.apply(job));
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(jobRetention);
+        jobs.values().removeIf(job -> job.status().isFinished() && job.updatedDate().isBefore(cutoff));
+    }
+}
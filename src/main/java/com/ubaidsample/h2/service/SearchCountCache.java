@@ -0,0 +1,62 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ubaidsample.h2.dto.request.FilterRequestDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Short-lived row counts per entity and normalized filter set, backing the approximate total of a search.
+ * Filters are keyed independent of their order, so the same filters in a different order share one count.
+ */
+@Component
+public class SearchCountCache {
+
+    private final Cache<String, Long> cache;
+
+    public SearchCountCache(MeterRegistry meterRegistry,
+                            @Value("${app.search.approximate-count.ttl:60s}") Duration ttl,
+                            @Value("${app.search.approximate-count.max-size:1000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "searchCountCache");
+    }
+
+    public long get(Class<?> entityClass, String search, List<FilterRequestDTO> filters, LongSupplier counter) {
+        return cache.get(key(entityClass, search, filters), key -> counter.getAsLong());
+    }
+
+    private static String key(Class<?> entityClass, String search, List<FilterRequestDTO> filters) {
+        String filterKey = filters == null ? "" : filters.stream()
+                .map(f -> f.getField() + " " + f.getOperator().toLowerCase() + " " + normalizeValue(f.getValue()))
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return entityClass.getName() + "|" + (search == null || search.isBlank() ? "" : search) + "|" + filterKey;
+    }
+
+    private static String normalizeValue(Object value) {
+        if (value instanceof Collection<?> col) {
+            return col.stream().map(String::valueOf).sorted().collect(Collectors.joining(",", "[", "]"));
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ubaidsample.h2.dto.common.KeysetCursor;
+import com.ubaidsample.h2.dto.request.FilterRequestDTO;
+import com.ubaidsample.h2.exception.InvalidFilterException;
+import com.ubaidsample.h2.util.EntityMetadata;
+import com.ubaidsample.h2.util.EntityMetadata.Attribute;
+import com.ubaidsample.h2.util.InvertedIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Turns a search into a shape, the entity plus the filter fields and operators, search mode, sort and seek,
+ * without any values, and compiles each shape once into a CompiledSearchQuery. Filters are put in canonical
+ * order first, so the same filters sent in a different order share one shape. Later searches of a known shape
+ * only convert and bind their values.
+ */
+@Component
+public class SearchQueryCompiler {
+
+    private static final Comparator<FilterRequestDTO> CANONICAL_ORDER = Comparator
+            .comparing(FilterRequestDTO::getField, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(f -> operatorOf(f));
+
+    private final EntityManager entityManager;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, CompiledSearchQuery<?>> cache;
+
+    public SearchQueryCompiler(EntityManager entityManager, MeterRegistry meterRegistry,
+                               @Value("${app.search.query-cache.max-size:256}") long maxSize) {
+        this.entityManager = entityManager;
+        this.meterRegistry = meterRegistry;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "searchQueryCache");
+    }
+
+    /**
+     * Binds a search to the compiled query of its shape, compiling the shape on first use.
+     * searchIds: ids resolved by the full-text index, null to search with LIKE.
+     * keyset: order by (sort, id) for cursor pagination, after: the cursor to seek past, may be null.
+     */
+    public <T> BoundSearchQuery<T> bind(EntityMetadata<T> metadata, List<FilterRequestDTO> filters, String search,
+                                        Collection<?> searchIds, Attribute sortAttribute, boolean ascending,
+                                        boolean keyset, KeysetCursor after) {
+        List<FilterRequestDTO> canonical = filters == null || filters.isEmpty() ? List.of() : new ArrayList<>(filters);
+        if (canonical.size() > 1) {
+            canonical.sort(CANONICAL_ORDER);
+        }
+        String searchMode = searchMode(search, searchIds);
+        String shape = shapeOf(metadata, canonical, searchMode, sortAttribute, ascending, keyset, after != null);
+        boolean[] compiled = {false};
+        @SuppressWarnings("unchecked")
+        CompiledSearchQuery<T> query = (CompiledSearchQuery<T>) cache.get(shape, key -> {
+            compiled[0] = true;
+            return compile(metadata, canonical, searchMode, sortAttribute, ascending, keyset, after != null, key);
+        });
+        if (!compiled[0]) {
+            query.recordHit();
+        }
+        return new BoundSearchQuery<>(entityManager, query,
+                arguments(metadata, canonical, search, searchMode, searchIds, sortAttribute, after));
+    }
+
+    private static String searchMode(String search, Collection<?> searchIds) {
+        if (search == null || search.isBlank()) {
+            return "none";
+        }
+        if (searchIds == null) {
+            // One group of word-prefix patterns per term, like the index; no terms matches nothing there either
+            int terms = InvertedIndex.tokenize(search).size();
+            return terms == 0 ? "nomatch" : "like" + terms;
+        }
+        return searchIds.isEmpty() ? "nomatch" : "ids";
+    }
+
+    private static String shapeOf(EntityMetadata<?> metadata, List<FilterRequestDTO> canonical, String searchMode,
+                                  Attribute sortAttribute, boolean ascending, boolean keyset, boolean seek) {
+        StringBuilder shape = new StringBuilder(64).append(metadata.getEntityClass().getSimpleName()).append('|');
+        for (int i = 0; i < canonical.size(); i++) {
+            FilterRequestDTO f = canonical.get(i);
+            shape.append(i == 0 ? "" : ",").append(f.getField()).append(' ').append(operatorOf(f));
+        }
+        shape.append("|search=").append(searchMode)
+                .append("|order=").append(sortAttribute.path()).append(ascending ? " asc" : " desc");
+        if (keyset) {
+            shape.append("|keyset").append(seek ? "+seek" : "");
+        }
+        return shape.toString();
+    }
+
+    // Null comparisons have no value to bind and compile to IS [NOT] NULL
+    private static String operatorOf(FilterRequestDTO f) {
+        String operator = f.getOperator() == null ? "" : f.getOperator().toLowerCase(Locale.ROOT);
+        if (f.getValue() == null && operator.equals("eq")) {
+            return "isnull";
+        }
+        if (f.getValue() == null && operator.equals("ne")) {
+            return "notnull";
+        }
+        return operator;
+    }
+
+    private <T> CompiledSearchQuery<T> compile(EntityMetadata<T> metadata, List<FilterRequestDTO> canonical,
+                                               String searchMode, Attribute sortAttribute, boolean ascending,
+                                               boolean keyset, boolean seek, String shape) {
+        List<String> where = new ArrayList<>();
+        List<String> parameterNames = new ArrayList<>();
+        for (FilterRequestDTO f : canonical) {
+            Attribute attribute = metadata.getAttribute(f.getField());
+            String path = "e." + attribute.path();
+            String operator = operatorOf(f);
+            String parameter = "p" + parameterNames.size();
+            switch (operator) {
+                case "isnull" -> where.add(path + " is null");
+                case "notnull" -> where.add(path + " is not null");
+                case "eq" -> where.add(path + " = :" + parameter);
+                case "ne" -> where.add(path + " <> :" + parameter);
+                case "like" -> {
+                    if (!String.class.isAssignableFrom(attribute.type())) {
+                        throw new InvalidFilterException("LIKE operator only applies to String fields: " + f.getField());
+                    }
+                    where.add(path + " like :" + parameter);
+                }
+                case "lt", "lte", "gt", "gte" -> {
+                    if (!attribute.isSortable()) {
+                        throw new InvalidFilterException("Field " + f.getField() + " with operator " + operator + " is not Comparable");
+                    }
+                    where.add(path + " " + comparison(operator) + " :" + parameter);
+                }
+                case "in" -> where.add(path + " in :" + parameter);
+                default -> throw new InvalidFilterException("Unsupported operator: " + f.getOperator());
+            }
+            if (!operator.equals("isnull") && !operator.equals("notnull")) {
+                parameterNames.add(parameter);
+            }
+        }
+        String idPath = "e." + metadata.getIdAttribute().path();
+        switch (searchMode) {
+            case "ids" -> {
+                where.add(idPath + " in :search");
+                parameterNames.add("search");
+            }
+            case "nomatch" -> where.add("1 = 0");
+            case "none" -> {
+            }
+            default -> {
+                List<Attribute> searchableAttributes = metadata.getSearchableAttributes();
+                if (searchableAttributes.isEmpty()) {
+                    throw new InvalidFilterException("Entity " + metadata.getEntityClass().getSimpleName() + " has no @Searchable fields");
+                }
+                // like<n>: every term has to start a word in one of the fields
+                int terms = Integer.parseInt(searchMode.substring("like".length()));
+                int patterns = InvertedIndex.wordPrefixPatterns("").size();
+                for (int term = 0; term < terms; term++) {
+                    StringJoiner any = new StringJoiner(" or ", "(", ")");
+                    for (int pattern = 0; pattern < patterns; pattern++) {
+                        String parameter = "search" + term + "_" + pattern;
+                        searchableAttributes.forEach(attribute ->
+                                any.add("lower(e." + attribute.path() + ") like :" + parameter + " escape '\\'"));
+                        parameterNames.add(parameter);
+                    }
+                    where.add(any.toString());
+                }
+            }
+        }
+        String sortPath = "e." + sortAttribute.path();
+        boolean sortById = sortPath.equals(idPath);
+        String after = ascending ? " > " : " < ";
+        if (seek) {
+            if (sortById) {
+                where.add(idPath + after + ":afterId");
+            } else {
+                where.add("(" + sortPath + after + ":afterSort or (" + sortPath + " = :afterSort and "
+                        + idPath + after + ":afterId))");
+                parameterNames.add("afterSort");
+            }
+            parameterNames.add("afterId");
+        }
+        String direction = ascending ? " asc" : " desc";
+        String from = " from " + metadata.getEntityClass().getSimpleName() + " e"
+                + (where.isEmpty() ? "" : " where " + String.join(" and ", where));
+        String orderBy = " order by " + sortPath + direction + (keyset && !sortById ? ", " + idPath + direction : "");
+        Counter.builder("search.query.shape")
+                .tag("entity", metadata.getEntityClass().getSimpleName())
+                .tag("shape", shape)
+                .tag("outcome", "compiled")
+                .register(meterRegistry)
+                .increment();
+        Counter hits = Counter.builder("search.query.shape")
+                .tag("entity", metadata.getEntityClass().getSimpleName())
+                .tag("shape", shape)
+                .tag("outcome", "hit")
+                .register(meterRegistry);
+        return new CompiledSearchQuery<>(metadata.getEntityClass(), shape, "select e" + from + orderBy,
+                "select count(e)" + from, parameterNames.toArray(new String[0]), hits);
+    }
+
+    private static String comparison(String operator) {
+        return switch (operator) {
+            case "lt" -> "<";
+            case "lte" -> "<=";
+            case "gt" -> ">";
+            default -> ">=";
+        };
+    }
+
+    // Values in the parameter order of compile()
+    private static Object[] arguments(EntityMetadata<?> metadata, List<FilterRequestDTO> canonical, String search,
+                                      String searchMode, Collection<?> searchIds, Attribute sortAttribute,
+                                      KeysetCursor after) {
+        List<Object> arguments = new ArrayList<>(canonical.size() + 3);
+        for (FilterRequestDTO f : canonical) {
+            String operator = operatorOf(f);
+            if (operator.equals("isnull") || operator.equals("notnull")) {
+                continue;
+            }
+            Object value;
+            try {
+                value = metadata.getAttribute(f.getField()).convert(f.getValue());
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new InvalidFilterException("Invalid value for " + f.getField() + ": " + f.getValue());
+            }
+            arguments.add(switch (operator) {
+                case "like" -> "%" + value + "%";
+                case "in" -> value instanceof Collection<?> ? value : List.of(value);
+                default -> value;
+            });
+        }
+        switch (searchMode) {
+            case "ids" -> arguments.add(searchIds);
+            case "none", "nomatch" -> {
+            }
+            default -> InvertedIndex.tokenize(search)
+                    .forEach(term -> arguments.addAll(InvertedIndex.wordPrefixPatterns(term)));
+        }
+        if (after != null) {
+            Attribute idAttribute = metadata.getIdAttribute();
+            if (!sortAttribute.path().equals(idAttribute.path())) {
+                arguments.add(sortAttribute.convert(after.sortValue()));
+            }
+            arguments.add(idAttribute.convert(after.id()));
+        }
+        return arguments.toArray();
+    }
+
+    /**
+     * A compiled search shape with the values of one request.
+     */
+    public record BoundSearchQuery<T>(EntityManager entityManager, CompiledSearchQuery<T> query, Object[] arguments) {
+
+        public List<T> list(int offset, int limit) {
+            return query.list(entityManager, arguments, offset, limit);
+        }
+
+        public Stream<T> stream(int fetchSize) {
+            return query.stream(entityManager, arguments, fetchSize);
+        }
+
+        public long count() {
+            return query.count(entityManager, arguments);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.common.BulkItemStatus;
+import com.ubaidsample.h2.dto.request.UserRequestDTO;
+import com.ubaidsample.h2.dto.response.BulkUserResponseDTO;
+import com.ubaidsample.h2.dto.response.BulkUserResultDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.exception.MissingInputException;
+import com.ubaidsample.h2.exception.TooManyItemsException;
+import com.ubaidsample.h2.mapper.UserMapper;
+import com.ubaidsample.h2.repository.UserRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Creates many users in one call. Idempotency keys, emails and user names are each checked with one IN query
+ * per lookup chunk instead of once per user, and new users are inserted chunk by chunk, each chunk in its own
+ * transaction so Hibernate can send the INSERTs as JDBC batches. Every item gets its own result, one invalid or
+ * conflicting item never fails the others.
+ */
+@Slf4j
+@Service
+public class UserBulkService {
+
+    private final UserRepository repository;
+    private final UserMapper userMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxItems;
+    private final int chunkSize;
+
+    public UserBulkService(UserRepository repository, UserMapper userMapper, Validator validator,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.user.bulk.max-items:10000}") int maxItems,
+                           @Value("${app.user.bulk.chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.userMapper = userMapper;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxItems = maxItems;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkUserResponseDTO saveAll(List<UserRequestDTO> requests) {
+        log.info("UserBulkService -> saveAll() called with {} items", requests == null ? 0 : requests.size());
+        if (requests == null || requests.isEmpty()) {
+            throw new MissingInputException("At least one user is required");
+        }
+        if (requests.size() > maxItems) {
+            throw new TooManyItemsException("At most " + maxItems + " users per bulk request, got " + requests.size());
+        }
+        BulkUserResultDTO[] results = new BulkUserResultDTO[requests.size()];
+        List<Integer> candidates = validate(requests, results);
+        candidates = resolveExisting(requests, candidates, results);
+        candidates = rejectTaken(requests, candidates, results);
+        insert(requests, candidates, results);
+        return summarize(Arrays.asList(results));
+    }
+
+    // Bean validation per item plus keys, emails and user names repeated within the request
+    private List<Integer> validate(List<UserRequestDTO> requests, BulkUserResultDTO[] results) {
+        List<Integer> candidates = new ArrayList<>(requests.size());
+        Map<String, Integer> firstByKey = new HashMap<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> userNames = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            UserRequestDTO request = requests.get(i);
+            if (request == null) {
+                results[i] = result(i, null, BulkItemStatus.INVALID, null, List.of("Item is null"));
+                continue;
+            }
+            Set<ConstraintViolation<UserRequestDTO>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                results[i] = result(i, request.getIdempotencyKey(), BulkItemStatus.INVALID, null, violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .toList());
+                continue;
+            }
+            Integer first = firstByKey.putIfAbsent(request.getIdempotencyKey(), i);
+            if (first != null) {
+                results[i] = result(i, request.getIdempotencyKey(), BulkItemStatus.CONFLICT, null,
+                        List.of("Idempotency key repeats item " + first));
+                continue;
+            }
+            if (!emails.add(request.getEmail()) || !userNames.add(request.getUserName())) {
+                results[i] = result(i, request.getIdempotencyKey(), BulkItemStatus.CONFLICT, null,
+                        List.of("Email or user name repeats an earlier item"));
+                continue;
+            }
+            candidates.add(i);
+        }
+        return candidates;
+    }
+
+    // Already processed idempotency keys return the stored user, as a single create would
+    private List<Integer> resolveExisting(List<UserRequestDTO> requests, List<Integer> candidates,
+                                          BulkUserResultDTO[] results) {
+        Map<String, User> existing = new HashMap<>();
+        lookup(requests, candidates, UserRequestDTO::getIdempotencyKey, repository::findByIdempotencyKeyIn)
+                .forEach(user -> existing.put(user.getIdempotencyKey(), user));
+        List<Integer> remaining = new ArrayList<>(candidates.size());
+        for (int i : candidates) {
+            User user = existing.get(requests.get(i).getIdempotencyKey());
+            if (user != null) {
+                results[i] = result(i, user.getIdempotencyKey(), BulkItemStatus.EXISTING, userMapper.toResponse(user), null);
+            } else {
+                remaining.add(i);
+            }
+        }
+        return remaining;
+    }
+
+    private List<Integer> rejectTaken(List<UserRequestDTO> requests, List<Integer> candidates,
+                                      BulkUserResultDTO[] results) {
+        Set<String> takenEmails = new HashSet<>(
+                lookup(requests, candidates, UserRequestDTO::getEmail, repository::findExistingEmails));
+        Set<String> takenUserNames = new HashSet<>(
+                lookup(requests, candidates, UserRequestDTO::getUserName, repository::findExistingUserNames));
+        List<Integer> remaining = new ArrayList<>(candidates.size());
+        for (int i : candidates) {
+            UserRequestDTO request = requests.get(i);
+            if (takenEmails.contains(request.getEmail())) {
+                results[i] = result(i, request.getIdempotencyKey(), BulkItemStatus.CONFLICT, null,
+                        List.of("User already exists with email: " + request.getEmail()));
+            } else if (takenUserNames.contains(request.getUserName())) {
+                results[i] = result(i, request.getIdempotencyKey(), BulkItemStatus.CONFLICT, null,
+                        List.of("User already exists with username: " + request.getUserName()));
+            } else {
+                remaining.add(i);
+            }
+        }
+        return remaining;
+    }
+
+    // One IN query per chunk keeps the statement and its bind list bounded
+    private <V> List<V> lookup(List<UserRequestDTO> requests, List<Integer> candidates,
+                               Function<UserRequestDTO, String> value, Function<Collection<String>, List<V>> query) {
+        List<V> found = new ArrayList<>();
+        for (int from = 0; from < candidates.size(); from += chunkSize) {
+            List<String> values = candidates.subList(from, Math.min(from + chunkSize, candidates.size())).stream()
+                    .map(i -> value.apply(requests.get(i)))
+                    .toList();
+            found.addAll(query.apply(values));
+        }
+        return found;
+    }
+
+    private void insert(List<UserRequestDTO> requests, List<Integer> candidates, BulkUserResultDTO[] results) {
+        for (int from = 0; from < candidates.size(); from += chunkSize) {
+            List<Integer> chunk = candidates.subList(from, Math.min(from + chunkSize, candidates.size()));
+            try {
+                List<User> saved = transactionTemplate.execute(status -> {
+                    List<User> users = repository.saveAll(chunk.stream().map(i -> userMapper.toEntity(requests.get(i))).toList());
+                    repository.flush();
+                    return users;
+                });
+                for (int j = 0; j < chunk.size(); j++) {
+                    int i = chunk.get(j);
+                    results[i] = result(i, requests.get(i).getIdempotencyKey(), BulkItemStatus.CREATED,
+                            userMapper.toResponse(saved.get(j)), null);
+                }
+            } catch (DataIntegrityViolationException ex) {
+                // A concurrent writer took a key, email or user name after the lookups, find out which item it was
+                log.warn("UserBulkService -> chunk of {} rolled back, inserting its items one by one", chunk.size());
+                chunk.forEach(i -> results[i] = insertOne(i, requests.get(i)));
+            }
+        }
+    }
+
+    private BulkUserResultDTO insertOne(int index, UserRequestDTO request) {
+        try {
+            User saved = transactionTemplate.execute(status -> repository.saveAndFlush(userMapper.toEntity(request)));
+            return result(index, request.getIdempotencyKey(), BulkItemStatus.CREATED, userMapper.toResponse(saved), null);
+        } catch (DataIntegrityViolationException ex) {
+            return repository.findByIdempotencyKey(request.getIdempotencyKey())
+                    .map(user -> result(index, request.getIdempotencyKey(), BulkItemStatus.EXISTING,
+                            userMapper.toResponse(user), null))
+                    .orElseGet(() -> result(index, request.getIdempotencyKey(), BulkItemStatus.CONFLICT, null,
+                            List.of("Email or user name already exists")));
+        } catch (RuntimeException ex) {
+            log.error("UserBulkService -> insert failed for idempotencyKey={}", request.getIdempotencyKey(), ex);
+            return result(index, request.getIdempotencyKey(), BulkItemStatus.FAILED, null, List.of(ex.getMessage()));
+        }
+    }
+
+    private static BulkUserResultDTO result(int index, String idempotencyKey, BulkItemStatus status,
+                                            UserResponseDTO user, List<String> errors) {
+        return new BulkUserResultDTO(index, idempotencyKey, status, user, errors);
+    }
+
+    private static BulkUserResponseDTO summarize(List<BulkUserResultDTO> results) {
+        int created = 0;
+        int existing = 0;
+        for (BulkUserResultDTO result : results) {
+            if (result.getStatus() == BulkItemStatus.CREATED) {
+                created++;
+            } else if (result.getStatus() == BulkItemStatus.EXISTING) {
+                existing++;
+            }
+        }
+        return new BulkUserResponseDTO(results.size(), created, existing, results.size() - created - existing, results);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.ubaidsample.h2.dto.common.AuditHistoryDTO;
+import com.ubaidsample.h2.dto.common.ExportFormat;
+import com.ubaidsample.h2.dto.request.PageRequestDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.mapper.UserMapper;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes every user matching a search to an output stream as NDJSON or CSV. Rows come from a database cursor
+ * inside one read-only transaction and the persistence context is cleared every clear-interval rows, so memory
+ * stays flat whatever the number of rows.
+ */
+@Slf4j
+@Service
+public class UserExportService {
+
+    private static final String CSV_HEADER = "user_id,idempotency_key,user_name,email,date_of_birth,date_of_leaving,"
+            + "postal_code,profile_image_object_name,profile_image_bucket,created_by,created_date,updated_by,updated_date";
+
+    private final PaginationService<User, UserResponseDTO> userPaginationService;
+    private final UserMapper userMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter ndjsonWriter;
+    private final int fetchSize;
+    private final int clearInterval;
+
+    public UserExportService(PaginationService<User, UserResponseDTO> userPaginationService, UserMapper userMapper,
+                             EntityManager entityManager, PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${app.export.fetch-size:500}") int fetchSize,
+                             @Value("${app.export.clear-interval:1000}") int clearInterval) {
+        this.userPaginationService = userPaginationService;
+        this.userMapper = userMapper;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // The response stream belongs to the container, writing a row must not close it
+        this.ndjsonWriter = objectMapper.writerFor(UserResponseDTO.class)
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.fetchSize = fetchSize;
+        this.clearInterval = clearInterval;
+    }
+
+    // Checked before the response is committed, so a bad filter still gets a 400
+    public void validate(PageRequestDTO pageRequest) {
+        userPaginationService.validate(pageRequest);
+    }
+
+    public void export(PageRequestDTO pageRequest, ExportFormat format, OutputStream out) {
+        log.info("UserExportService -> export() called with format: {}", format);
+        long rows = readOnlyTransaction.execute(status -> {
+            try (Stream<User> users = userPaginationService.stream(pageRequest, fetchSize)) {
+                return format == ExportFormat.CSV ? writeCsv(users, out) : writeNdjson(users, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("UserExportService -> export() wrote {} rows", rows);
+    }
+
+    private long writeNdjson(Stream<User> users, OutputStream out) throws IOException {
+        long rows = 0;
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        try (SequenceWriter writer = ndjsonWriter.writeValues(buffered)) {
+            for (Iterator<User> it = users.iterator(); it.hasNext(); ) {
+                writer.write(userMapper.toResponse(it.next()));
+                rows = afterRow(rows, buffered);
+            }
+        }
+        if (rows > 0) {
+            buffered.write('\n');
+        }
+        buffered.flush();
+        return rows;
+    }
+
+    private long writeCsv(Stream<User> users, OutputStream out) throws IOException {
+        long rows = 0;
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        for (Iterator<User> it = users.iterator(); it.hasNext(); ) {
+            UserResponseDTO user = userMapper.toResponse(it.next());
+            AuditHistoryDTO audit = user.getAuditHistoryDTO() == null ? new AuditHistoryDTO() : user.getAuditHistoryDTO();
+            writeCsvRow(writer, user.getUserId(), user.getIdempotencyKey(), user.getUserName(), user.getEmail(),
+                    user.getDateOfBirth(), user.getDateOfLeaving(), user.getPostalCode(),
+                    user.getProfileImageObjectName(), user.getProfileImageBucket(), audit.getCreatedBy(),
+                    audit.getCreatedDate(), audit.getUpdatedBy(), audit.getUpdatedDate());
+            rows = afterRow(rows, writer);
+        }
+        writer.flush();
+        return rows;
+    }
+
+    // Detaches what was read so far and pushes it to the client every clear-interval rows
+    private long afterRow(long rows, Flushable output) throws IOException {
+        rows++;
+        if (rows % clearInterval == 0) {
+            entityManager.clear();
+            output.flush();
+        }
+        return rows;
+    }
+
+    private static void writeCsvRow(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    // RFC 4180: quote values containing a separator, quote or line break and double the quotes inside
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
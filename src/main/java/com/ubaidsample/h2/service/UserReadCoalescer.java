@@ -0,0 +1,137 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.common.ProfileImageDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight reads per user id: concurrent callers for the same id share one read-only transaction,
+ * one query and one mapped result. While a write to the id is flushed but not yet completed, reads for it
+ * bypass the shared load, and loads started before the write are not joined afterwards.
+ */
+@Component
+public class UserReadCoalescer {
+
+    private final ConcurrentMap<Long, CompletableFuture<UserResponseDTO>> users = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, CompletableFuture<ProfileImageDTO>> profileImages = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Integer> pendingWrites = new ConcurrentHashMap<>();
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Flight userFlight;
+    private final Flight profileImageFlight;
+
+    public UserReadCoalescer(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                             @Value("${app.user.read-coalescing.enabled:true}") boolean enabled) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.userFlight = new Flight(meterRegistry, "findById");
+        this.profileImageFlight = new Flight(meterRegistry, "findProfileImage");
+    }
+
+    public UserResponseDTO findById(Long id, Supplier<UserResponseDTO> loader) {
+        return coalesce(users, userFlight, id, loader);
+    }
+
+    public ProfileImageDTO findProfileImage(Long id, Supplier<ProfileImageDTO> loader) {
+        return coalesce(profileImages, profileImageFlight, id, loader);
+    }
+
+    // Called when a change to the user is flushed, the id stays pending until its transaction completes
+    public void writeStarted(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            forget(id);
+            return;
+        }
+        // Counted inside the map's per-key lock, a count is never changed after its entry was removed
+        pendingWrites.merge(id, 1, Integer::sum);
+        forget(id);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                pendingWrites.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1);
+                // A load that started before the commit may still be running, later readers start a new one
+                forget(id);
+            }
+        });
+    }
+
+    private <V> V coalesce(ConcurrentMap<Long, CompletableFuture<V>> flights, Flight flight, Long id, Supplier<V> loader) {
+        if (!enabled || pendingWrites.containsKey(id)) {
+            flight.bypassed.increment();
+            return readOnlyTransaction.execute(status -> loader.get());
+        }
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = flights.putIfAbsent(id, own);
+        if (running != null) {
+            flight.joined.increment();
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                // Joined callers see the same outcome as the caller that loaded, e.g. ResourceNotFoundException
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+        flight.loaded.increment();
+        try {
+            V result = readOnlyTransaction.execute(status -> loader.get());
+            own.complete(result);
+            return result;
+        } catch (RuntimeException ex) {
+            own.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            flights.remove(id, own);
+        }
+    }
+
+    private void forget(Long id) {
+        users.remove(id);
+        profileImages.remove(id);
+    }
+
+    // Coalescing ratio per operation is joined / (loaded + joined)
+    private static final class Flight {
+
+        private final Counter loaded;
+        private final Counter joined;
+        private final Counter bypassed;
+
+        private Flight(MeterRegistry meterRegistry, String operation) {
+            this.loaded = counter(meterRegistry, operation, "loaded");
+            this.joined = counter(meterRegistry, operation, "joined");
+            this.bypassed = counter(meterRegistry, operation, "bypassed");
+        }
+
+        private static Counter counter(MeterRegistry meterRegistry, String operation, String outcome) {
+            return Counter.builder("user.read.coalescing")
+                    .description("User reads by whether they loaded, joined an in-flight load or bypassed coalescing")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
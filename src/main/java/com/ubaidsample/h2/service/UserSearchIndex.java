@@ -0,0 +1,232 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.entity.SearchIndexInstance;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.repository.SearchIndexInstanceRepository;
+import com.ubaidsample.h2.util.EntityMetadata;
+import com.ubaidsample.h2.util.EntityMetadata.Attribute;
+import com.ubaidsample.h2.util.InvertedIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Full-text index over the @Searchable fields of User, answering the "search" of a search request with the
+ * matching ids so the database filters by primary key instead of scanning with LIKE '%term%'.
+ * Built from the table once the application is ready and kept in sync by UserSearchIndexListener after each commit.
+ * Until it is built, or when disabled, search() returns null and callers fall back to LIKE.
+ * <p>
+ * The listener only sees the commits of this instance, so the index is meant for a single instance. Each instance
+ * sends a heartbeat to search_index_instances; while another one is alive searches fall back to LIKE, and once it is
+ * gone the index is rebuilt before it answers again. A write of an instance that just started may go unseen for up
+ * to one heartbeat-interval, until the others notice it.
+ */
+@Slf4j
+@Component
+public class UserSearchIndex {
+
+    private final EntityManager entityManager;
+    private final SearchIndexInstanceRepository instanceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final List<Attribute> searchableAttributes = EntityMetadata.of(User.class).getSearchableAttributes();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final boolean enabled;
+    private final int rebuildBatchSize;
+    private final int maxMatches;
+    private final boolean instanceCheck;
+    private final Duration heartbeatTimeout;
+    // Serializes updates with the swap of a rebuilt index, searches never take it
+    private final Object updateLock = new Object();
+    private volatile InvertedIndex<Long> index = new InvertedIndex<>();
+    // Updates made while a rebuild reads the table, replayed onto the new index; null when no rebuild runs
+    private List<Consumer<InvertedIndex<Long>>> rebuildUpdates;
+    private volatile boolean ready;
+    private volatile boolean shared;
+
+    public UserSearchIndex(EntityManager entityManager, SearchIndexInstanceRepository instanceRepository,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           @Value("${app.search.full-text.enabled:true}") boolean enabled,
+                           @Value("${app.search.full-text.rebuild-batch-size:5000}") int rebuildBatchSize,
+                           @Value("${app.search.full-text.max-matches:10000}") int maxMatches,
+                           @Value("${app.search.full-text.instance-check:true}") boolean instanceCheck,
+                           @Value("${app.search.full-text.heartbeat-interval:5s}") Duration heartbeatInterval) {
+        this.entityManager = entityManager;
+        this.instanceRepository = instanceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.maxMatches = maxMatches;
+        this.instanceCheck = instanceCheck;
+        this.heartbeatTimeout = heartbeatInterval.multipliedBy(3);
+        Gauge.builder("search.index.documents", this, searchIndex -> searchIndex.index.size())
+                .tag("entity", User.class.getSimpleName())
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Reloads the index from the table in id order, reading only the id and the searchable columns, into a new index
+     * that replaces the current one when done. Searches keep using the current one meanwhile, and updates made while
+     * the table is read are replayed onto the new one, since the rows may have been read before they committed.
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        InvertedIndex<Long> rebuilt = new InvertedIndex<>();
+        synchronized (updateLock) {
+            rebuildUpdates = new ArrayList<>();
+        }
+        boolean loaded = false;
+        try {
+            load(rebuilt);
+            loaded = true;
+        } finally {
+            synchronized (updateLock) {
+                if (loaded) {
+                    rebuildUpdates.forEach(update -> update.accept(rebuilt));
+                    index = rebuilt;
+                }
+                rebuildUpdates = null;
+            }
+        }
+        ready = true;
+        log.info("UserSearchIndex -> rebuilt {} users in {} ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void load(InvertedIndex<Long> target) {
+        String jpql = "select u.userId" + searchableAttributes.stream().map(a -> ", u." + a.path()).reduce("", String::concat)
+                + " from User u where u.userId > :lastId order by u.userId";
+        long lastId = Long.MIN_VALUE;
+        List<Object[]> rows;
+        do {
+            rows = entityManager.createQuery(jpql, Object[].class)
+                    .setParameter("lastId", lastId)
+                    .setMaxResults(rebuildBatchSize)
+                    .getResultList();
+            for (Object[] row : rows) {
+                lastId = (Long) row[0];
+                List<String> texts = new ArrayList<>(row.length - 1);
+                for (int i = 1; i < row.length; i++) {
+                    texts.add((String) row[i]);
+                }
+                target.index(lastId, texts);
+            }
+            entityManager.clear();
+        } while (rows.size() == rebuildBatchSize);
+    }
+
+    // Registers this instance and looks for others writing to the same table
+    @Scheduled(fixedDelayString = "${app.search.full-text.heartbeat-interval:5s}")
+    public synchronized void heartbeat() {
+        if (!enabled || !instanceCheck) {
+            return;
+        }
+        boolean alone;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            alone = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                instanceRepository.save(new SearchIndexInstance(instanceId, now));
+                instanceRepository.deleteStale(now.minus(heartbeatTimeout));
+                return instanceRepository.countOthersSince(instanceId, now.minus(heartbeatTimeout)) == 0;
+            }));
+        } catch (RuntimeException ex) {
+            // Others may have come meanwhile, the next heartbeat that succeeds decides
+            log.warn("Search index heartbeat failed, searching with LIKE: {}", ex.getMessage());
+            shared = true;
+            return;
+        }
+        if (!alone) {
+            if (!shared) {
+                log.warn("Another instance shares the users table, searching with LIKE until it is gone");
+                shared = true;
+            }
+        } else if (shared) {
+            // The writes of the other instances never reached this index
+            rebuild();
+            shared = false;
+            log.info("No other instance shares the users table anymore, the search index answers again");
+        }
+    }
+
+    @PreDestroy
+    public void deregister() {
+        if (enabled && instanceCheck) {
+            try {
+                instanceRepository.deleteById(instanceId);
+            } catch (RuntimeException ex) {
+                log.debug("Could not deregister search index instance {}: {}", instanceId, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ids of the users matching every term of the query as a prefix of a word in a @Searchable field,
+     * or null when the index cannot answer and the caller should fall back to LIKE. A term matching more than
+     * max-matches users is not selective, an IN list that long costs more than letting LIKE stop at the first page.
+     */
+    public Set<Long> search(String query) {
+        if (!enabled || !ready || shared) {
+            return null;
+        }
+        Set<Long> ids = index.search(query);
+        return ids.size() > maxMatches ? null : ids;
+    }
+
+    public void index(Long userId, List<String> texts) {
+        if (enabled) {
+            update(target -> target.index(userId, texts));
+        }
+    }
+
+    public void remove(Long userId) {
+        if (enabled) {
+            update(target -> target.remove(userId));
+        }
+    }
+
+    private void update(Consumer<InvertedIndex<Long>> update) {
+        synchronized (updateLock) {
+            update.accept(index);
+            if (rebuildUpdates != null) {
+                rebuildUpdates.add(update);
+            }
+        }
+    }
+
+    public List<String> searchableTexts(User user) {
+        List<String> texts = new ArrayList<>(searchableAttributes.size());
+        for (Attribute attribute : searchableAttributes) {
+            texts.add((String) attribute.read(user));
+        }
+        return texts;
+    }
+}
@@ -7,42 +7,59 @@
 
 package com.ubaidsample.h2.service;
 
+import com.ubaidsample.h2.dto.common.ProfileImageDTO;
+import com.ubaidsample.h2.dto.common.UploadJobStatus;
 import com.ubaidsample.h2.dto.request.PageRequestDTO;
 import com.ubaidsample.h2.dto.request.UserPartialUpdateRequestDTO;
 import com.ubaidsample.h2.dto.request.UserRequestDTO;
 import com.ubaidsample.h2.dto.response.PageResponseDTO;
 import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
 import com.ubaidsample.h2.entity.User;
-import com.ubaidsample.h2.exception.InvalidFileTypeException;
+import com.ubaidsample.h2.exception.FileTooLargeException;
+import com.ubaidsample.h2.exception.InvalidImageSizeException;
 import com.ubaidsample.h2.exception.MinioOperationException;
 import com.ubaidsample.h2.exception.ResourceAlreadyExistsException;
 import com.ubaidsample.h2.exception.ResourceNotFoundException;
+import com.ubaidsample.h2.mapper.UserMapper;
 import com.ubaidsample.h2.repository.UserRepository;
-import com.ubaidsample.h2.util.MapperUtil;
+import com.ubaidsample.h2.util.LimitedInputStream;
+import io.micrometer.core.instrument.Timer;
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
 import io.minio.GetPresignedObjectUrlArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
-import io.minio.RemoveObjectArgs;
-import io.minio.errors.*;
+import io.minio.errors.MinioException;
 import io.minio.http.Method;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.TeeInputStream;
 import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.InvalidKeyException;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -53,51 +70,83 @@ public class UserService {
 
     private final UserRepository repository;
 
-    private final ModelMapper modelMapper;
+    private final UserMapper userMapper;
+
+    private final PresignedUrlCache presignedUrlCache;
+
+    private final PaginationService<User, UserResponseDTO> userPaginationService;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserReadCoalescer readCoalescer;
+
+    private final MinioMetrics minioMetrics;
+
+    private final ImageRenditionService imageRenditionService;
+
+    private final ContentAddressedImageStore imageStore;
+
+    private final ImageOutbox imageOutbox;
+
+    private final ImageUploadValidator uploadValidator;
 
     @Value("${minio.bucket}")
     private String bucket;
 
-    @Value("${app.upload.allowed-types}")
-    private String allowedTypes;
-
     @Value("${minio.presigned-url-expiry}")
     private int profileImageUrlExpiry;
 
-    @Transactional
+    @Value("${app.upload.max-file-size:${spring.servlet.multipart.max-file-size}}")
+    private DataSize maxFileSize;
+
+    @Value("${minio.upload.part-size:5MB}")
+    private DataSize uploadPartSize;
+
+    @Value("${app.image.content-addressed.enabled:true}")
+    private boolean contentAddressed;
+
+    // Object name, rendition object names and the outbox guard of a stored upload
+    private record StoredImage(String objectName, Map<String, String> renditions, String guardKey) {}
+
     public UserResponseDTO save(UserRequestDTO request) {
         log.info("UserService -> save() called with idempotencyKey={}", request.getIdempotencyKey());
-        // Check if this idempotency key was already processed
-        return findByIdempotencyKey(request);
-
+        // Retries are answered from the cache, the database is checked only for keys it has not seen
+        return idempotencyCache.get(request.getIdempotencyKey(), () -> {
+            try {
+                return transactionTemplate.execute(status -> findByIdempotencyKey(request));
+            } catch (DataIntegrityViolationException ex) {
+                // The failed insert is rolled back by now, a row committed concurrently is read in a new transaction
+                return transactionTemplate.execute(status -> handleConstraintViolation(request, ex));
+            }
+        });
     }
 
     private UserResponseDTO findByIdempotencyKey(UserRequestDTO request) {
         return repository.findByIdempotencyKey(request.getIdempotencyKey())
                 .map(user -> {
                     log.info("Returning existing user for idempotencyKey={}", request.getIdempotencyKey());
-                    return modelMapper.map(user, UserResponseDTO.class);
+                    return userMapper.toResponse(user);
                 })
                 .orElseGet(() -> saveNewUser(request));
     }
 
     private UserResponseDTO saveNewUser(UserRequestDTO request) {
         // Convert the DTO to the entity
-        User entity = modelMapper.map(request, User.class);
-        try {
-            // Save the new data
-            User response = repository.saveAndFlush(entity);
-            // Convert the entity to the DTO
-            return modelMapper.map(response, UserResponseDTO.class);
-        } catch (DataIntegrityViolationException ex) {
-            return handleConstraintViolation(request, ex);
-        }
+        User entity = userMapper.toEntity(request);
+        // Save the new data, a constraint violation marks the transaction rollback-only and is handled by the caller
+        User response = repository.saveAndFlush(entity);
+        // Convert the entity to the DTO
+        return userMapper.toResponse(response);
     }
 
     private UserResponseDTO handleConstraintViolation(UserRequestDTO request, DataIntegrityViolationException ex) {
         Throwable rootCause = ExceptionUtils.getRootCause(ex);
         String constraintName = null;
-        if (rootCause instanceof org.hibernate.exception.ConstraintViolationException hibernateCve) {
+        // Hibernate's exception wraps the driver's one, so it is found in the cause chain rather than at its root
+        var hibernateCve = ExceptionUtils.throwableOfType(ex, org.hibernate.exception.ConstraintViolationException.class);
+        if (hibernateCve != null) {
             constraintName = hibernateCve.getConstraintName();
 
             /* else if (rootCause instanceof java.sql.SQLIntegrityConstraintViolationException sqlCve) {
@@ -115,16 +164,16 @@ public class UserService {
                 constraintName = extractOracleConstraint(oracleEx);
             }*/
 
-            if (constraintName != null) {
+            if (constraintName == null) {
                 throw ex;
             }
-            return switch (constraintName) {
+            return switch (knownConstraint(constraintName)) {
                 case "uk_user_email" -> throw new ResourceAlreadyExistsException("User already exists with email: " + request.getEmail());
                 case "uk_user_username" -> throw new ResourceAlreadyExistsException("User already exists with username: " + request.getUserName());
                 case "uk_user_idempotency_key" -> repository.findByIdempotencyKey(request.getIdempotencyKey())
                         .map(user -> {
                             log.warn("Concurrent idempotent request detected; returning original result for key={}", request.getIdempotencyKey());
-                            return modelMapper.map(user, UserResponseDTO.class);
+                            return userMapper.toResponse(user);
                         })
                         .orElseThrow(() -> ex);
                 default -> throw ex;
@@ -133,64 +182,328 @@ public class UserService {
         throw ex;
     }
 
+    // Databases decorate the declared name, e.g. H2 reports PUBLIC.UK_USER_USERNAME_INDEX_4 for uk_user_username
+    private static String knownConstraint(String constraintName) {
+        String name = constraintName.toLowerCase(Locale.ROOT);
+        return Stream.of("uk_user_email", "uk_user_username", "uk_user_idempotency_key")
+                .filter(name::contains)
+                .findFirst()
+                .orElse(name);
+    }
+
     public String uploadProfileImage(Long id, MultipartFile file) throws IOException, Exception {
+        // Validate MIME type and extension
+        String originalName = file.getOriginalFilename();
+        validateProfileImage(file.getContentType(), originalName);
+        try (InputStream is = new BufferedInputStream(file.getInputStream())) {
+            // Validate the real format and dimensions, the client declared type alone is not trusted
+            uploadValidator.inspect(is, file.getContentType());
+            return storeProfileImage(id, is, file.getSize(), -1, file.getContentType(), originalName, status -> {});
+        }
+    }
+
+    // Takes the raw request body without a multipart parse and streams it into MinIO; only renditions need the whole
+    // image, with them on it is also copied to memory as it streams past (up to max-file-size)
+    public String uploadProfileImage(Long id, InputStream body, String contentType, long contentLength,
+                                     String fileName) throws IOException {
         // Validate MIME type
-        List<String> allowed = List.of(allowedTypes.split(","));
-        if (!allowed.contains(file.getContentType())) {
-            throw new InvalidFileTypeException("Only JPEG and PNG files are allowed");
+        uploadValidator.validateContentType(contentType);
+        // Reject early when the client already announced an oversized body
+        if (contentLength > maxFileSize.toBytes()) {
+            throw new FileTooLargeException("File size exceeds the allowed limit of " + maxFileSize);
         }
+        // Enforce the limit on the bytes actually received as well, the header can lie or be absent
+        BufferedInputStream is = new BufferedInputStream(new LimitedInputStream(body, maxFileSize.toBytes()));
+        // Validate the file signature and dimensions on the first bytes of the stream
+        uploadValidator.inspect(is, contentType);
+        // File name is optional on the streaming path, fall back to one matching the content
+        String originalName = StringUtils.hasText(fileName)
+                ? fileName
+                : "image" + (MediaType.IMAGE_PNG_VALUE.equals(contentType) ? ".png" : ".jpg");
+        uploadValidator.validateFileName(originalName);
+        // Unknown length is uploaded in parts of partSize as the bytes arrive
+        return contentLength >= 0
+                ? storeProfileImage(id, is, contentLength, -1, contentType, originalName, true, status -> {})
+                : storeProfileImage(id, is, -1, uploadPartSize.toBytes(), contentType, originalName, true, status -> {});
+    }
+
+    void validateProfileImage(String contentType, String originalName) {
+        // Validate MIME type
+        uploadValidator.validateContentType(contentType);
         // Validate extension (case-insensitive)
-        String originalName = file.getOriginalFilename();
-        if (originalName == null || !originalName.toLowerCase().matches(".*\\.(jpg|jpeg|png)$")) {
-            throw new InvalidFileTypeException("File extension must be .jpg, .jpeg, or .png");
+        uploadValidator.validateFileName(originalName);
+    }
+
+    void requireExisting(Long id) {
+        if (!repository.existsById(id)) {
+            throw new ResourceNotFoundException("Nothing found in the database with id " + id);
         }
-        // Fetch existing
-        User entity = repository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Nothing found in the database with id " + id));
-        // Delete old image if exists
-        if (entity.getProfileImageObjectName() != null) {
+    }
+
+    String storeProfileImage(Long id, InputStream is, long size, long partSize, String contentType,
+                             String originalName, Consumer<UploadJobStatus> progress) throws IOException {
+        return storeProfileImage(id, is, size, partSize, contentType, originalName, false, progress);
+    }
+
+    // New object is written and referenced before the old one is removed, so a failed upload keeps the old image.
+    // streamed: the body is read from the network as it arrives and must not be held in memory to be hashed
+    private String storeProfileImage(Long id, InputStream is, long size, long partSize, String contentType,
+                                     String originalName, boolean streamed, Consumer<UploadJobStatus> progress)
+            throws IOException {
+        requireExisting(id);
+        // Upload to MinIO (outside any transaction), guarded by an outbox entry that undoes it unless it is saved
+        progress.accept(UploadJobStatus.UPLOADING);
+        StoredImage stored;
+        if (!contentAddressed) {
+            stored = storeUnique(id, is, size, partSize, contentType, originalName, progress);
+        } else if (streamed) {
+            stored = storeContentAddressedStreamed(id, is, size, partSize, contentType, originalName, progress);
+        } else {
+            stored = storeContentAddressed(is, contentType, progress);
+        }
+        // Persist objectName + bucket, cancel the guard and queue the removal of the old image in one transaction
+        progress.accept(UploadJobStatus.SAVING);
+        try {
+            transactionTemplate.executeWithoutResult(status -> saveImageObjectName(id, stored));
+        } catch (RuntimeException ex) {
+            // The user never came to reference the upload
+            imageOutbox.fireGuard(stored.guardKey());
+            throw ex;
+        }
+        // Return presigned GET URL immediately
+        return generateDownloadUrl(stored.objectName());
+    }
+
+    // A new object per upload, named after the user and the original file name
+    private StoredImage storeUnique(Long id, InputStream is, long size, long partSize, String contentType,
+                                    String originalName, Consumer<UploadJobStatus> progress) throws IOException {
+        // Generate object name, renditions get the size inserted before the original name
+        String objectNamePrefix = "user-" + id + "-" + UUID.randomUUID();
+        String objectName = objectNamePrefix + "-" + originalName;
+        Map<String, String> renditionNames = imageRenditionService.isEnabled()
+                ? imageRenditionService.sizes().stream().collect(Collectors.toMap(renditionSize -> renditionSize,
+                        renditionSize -> objectNamePrefix + "-" + renditionSize + "-" + originalName))
+                : Map.of();
+        String guardKey = imageOutbox.guard(ImageOutboxEntry.Operation.DELETE, bucket, objectName, renditionNames);
+        // Renditions need the whole image, a copy is kept as the bytes stream past (bounded by the max file size)
+        ByteArrayOutputStream original = imageRenditionService.isEnabled()
+                ? new ByteArrayOutputStream(size > 0 ? (int) size : 64 * 1024)
+                : null;
+        try {
+            putImage(objectName, original != null ? new TeeInputStream(is, original) : is, size, partSize, contentType);
+            // Decode once, then scale, encode and store every size in parallel
+            Map<String, String> renditions = Map.of();
+            if (original != null) {
+                progress.accept(UploadJobStatus.RESIZING);
+                renditions = imageRenditionService.storeRenditions(bucket, original.toByteArray(), contentType,
+                        renditionNames::get);
+            }
+            return new StoredImage(objectName, renditions, guardKey);
+        } catch (IOException | RuntimeException ex) {
+            // Whatever was stored goes now instead of after guard-delay
+            imageOutbox.fireGuard(guardKey);
+            throw ex;
+        }
+    }
+
+    // An object named after the SHA-256 of the content, content that is already stored is not uploaded again
+    private StoredImage storeContentAddressed(InputStream is, String contentType,
+                                              Consumer<UploadJobStatus> progress) throws IOException {
+        MessageDigest digest = sha256();
+        // The digest is complete only after the last byte, so the content is read first (bounded by the max file size)
+        byte[] content = new DigestInputStream(is, digest).readAllBytes();
+        String objectName = contentObjectName(digest, contentType);
+        return acquireContentAddressed(objectName, content.length, contentType, content, progress, () -> {
             try {
-                minioClient.removeObject(
-                        RemoveObjectArgs.builder()
-                                .bucket(entity.getProfileImageBucket())
-                                .object(entity.getProfileImageObjectName())
-                                .build()
-                );
-            } catch (Exception ex) {
-                // Log warning but continue
-                log.warn("Warning: Could not delete old image: {}", ex.getMessage());
+                putImage(objectName, new ByteArrayInputStream(content), content.length, -1, contentType);
+            } catch (IOException e) {
+                throw new MinioOperationException("Failed to upload image: " + objectName, e);
             }
+        });
+    }
+
+    // Hashed as it streams into a temporary object, which MinIO copies to the digest name if the content is new;
+    // the bytes are sent even when the content is already stored, that is the price of not holding them first
+    private StoredImage storeContentAddressedStreamed(Long id, InputStream is, long size, long partSize,
+                                                      String contentType, String originalName,
+                                                      Consumer<UploadJobStatus> progress) throws IOException {
+        // Named like a unique upload, so the reaper removes it should the guard be lost
+        String uploadName = "user-" + id + "-" + UUID.randomUUID() + "-upload-" + originalName;
+        String uploadGuardKey = imageOutbox.guard(ImageOutboxEntry.Operation.DELETE, bucket, uploadName, Map.of());
+        try {
+            MessageDigest digest = sha256();
+            ByteArrayOutputStream original = imageRenditionService.isEnabled()
+                    ? new ByteArrayOutputStream(size > 0 ? (int) size : 64 * 1024)
+                    : null;
+            LimitedInputStream counted = new LimitedInputStream(
+                    new DigestInputStream(original != null ? new TeeInputStream(is, original) : is, digest),
+                    Long.MAX_VALUE);
+            putImage(uploadName, counted, size, partSize, contentType);
+            String objectName = contentObjectName(digest, contentType);
+            return acquireContentAddressed(objectName, counted.getCount(), contentType,
+                    original != null ? original.toByteArray() : null, progress,
+                    () -> copyImage(uploadName, objectName));
+        } finally {
+            // Copied or not needed, the temporary object goes now instead of after guard-delay
+            imageOutbox.fireGuard(uploadGuardKey);
+        }
+    }
+
+    // Takes a reference to the content, running write and storing the renditions of content only if it is not stored yet
+    private StoredImage acquireContentAddressed(String objectName, long sizeBytes, String contentType, byte[] content,
+                                                Consumer<UploadJobStatus> progress, Runnable write) {
+        int extensionStart = objectName.lastIndexOf('.');
+        String objectNamePrefix = objectName.substring(0, extensionStart);
+        String extension = objectName.substring(extensionStart);
+        String[] guardKey = new String[1];
+        Map<String, String> renditions;
+        try {
+            renditions = imageStore.acquire(bucket, objectName, sizeBytes, () -> {
+                write.run();
+                if (!imageRenditionService.isEnabled()) {
+                    return Map.of();
+                }
+                progress.accept(UploadJobStatus.RESIZING);
+                return imageRenditionService.storeRenditions(bucket, content, contentType,
+                        renditionSize -> objectNamePrefix + "-" + renditionSize + extension);
+            }, () -> guardKey[0] = imageOutbox.guard(ImageOutboxEntry.Operation.RELEASE, bucket, objectName, Map.of()));
+        } catch (RuntimeException ex) {
+            // The reference was taken before the content was written, the guard drops it now instead of after guard-delay
+            if (guardKey[0] != null) {
+                imageOutbox.fireGuard(guardKey[0]);
+            }
+            throw ex;
+        }
+        return new StoredImage(objectName, renditions, guardKey[0]);
+    }
+
+    private static String contentObjectName(MessageDigest digest, String contentType) {
+        return "sha256-" + HexFormat.of().formatHex(digest.digest())
+                + (MediaType.IMAGE_PNG_VALUE.equals(contentType) ? ".png" : ".jpg");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
-        // Generate object name
-        String objectName = "user-" + id + "-" + UUID.randomUUID() + "-" + originalName;
-        // Upload to MinIO (outside @Transactional)
-        try (InputStream is = file.getInputStream()) {
+    }
+
+    private void putImage(String objectName, InputStream is, long size, long partSize, String contentType)
+            throws IOException {
+        // Counts the bytes actually sent, the size is unknown on the chunked streaming path
+        LimitedInputStream counted = new LimitedInputStream(is, Long.MAX_VALUE);
+        Timer.Sample sample = minioMetrics.start();
+        try {
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucket)
                             .object(objectName)
-                            .stream(is, file.getSize(), -1)
-                            .contentType(file.getContentType())
+                            .stream(counted, size, partSize)
+                            .contentType(contentType)
                             .build()
             );
+            minioMetrics.success(sample, MinioMetrics.PUT_OBJECT);
+            minioMetrics.uploaded(counted.getCount(), true);
+        } catch (MinioException | GeneralSecurityException e) {
+            minioMetrics.failure(sample, MinioMetrics.PUT_OBJECT);
+            minioMetrics.uploaded(counted.getCount(), false);
+            throw new MinioOperationException("Failed to upload image: " + objectName, e);
+        } catch (IOException | RuntimeException e) {
+            minioMetrics.failure(sample, MinioMetrics.PUT_OBJECT);
+            minioMetrics.uploaded(counted.getCount(), false);
+            throw e;
         }
-        // Persist objectName + bucket in DB transactionally
-        saveImageObjectName(entity, objectName);
-        // Return presigned GET URL immediately
-        return generateDownloadUrl(objectName);
     }
 
-    @Transactional
-    protected void saveImageObjectName(User entity, String objectName) {
-        entity.setProfileImageObjectName(objectName);
+    // Server-side copy within the bucket, the bytes do not pass through this application again
+    private void copyImage(String sourceObjectName, String objectName) {
+        Timer.Sample sample = minioMetrics.start();
+        try {
+            minioClient.copyObject(
+                    CopyObjectArgs.builder()
+                            .bucket(bucket)
+                            .object(objectName)
+                            .source(CopySource.builder()
+                                    .bucket(bucket)
+                                    .object(sourceObjectName)
+                                    .build())
+                            .build()
+            );
+            minioMetrics.success(sample, MinioMetrics.COPY_OBJECT);
+        } catch (Exception e) {
+            minioMetrics.failure(sample, MinioMetrics.COPY_OBJECT);
+            throw new MinioOperationException("Failed to copy image " + sourceObjectName + " to " + objectName, e);
+        }
+    }
+
+    // Runs in the caller's transaction, with the user row locked so a concurrent upload releases this one's image
+    private void saveImageObjectName(Long id, StoredImage stored) {
+        User entity = repository.findForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Nothing found in the database with id " + id));
+        if (!imageOutbox.cancelGuard(stored.guardKey())) {
+            throw new MinioOperationException("Upload took longer than its guard, the stored image was removed: "
+                    + stored.objectName());
+        }
+        // The old objects are going away, drop their cached URLs and release them once this commits
+        if (entity.getProfileImageObjectName() != null) {
+            presignedUrlCache.invalidate(entity.getProfileImageBucket(), entity.getProfileImageObjectName());
+            entity.getProfileImageRenditions().values()
+                    .forEach(rendition -> presignedUrlCache.invalidate(entity.getProfileImageBucket(), rendition));
+            imageOutbox.enqueue(ImageOutboxEntry.Operation.RELEASE, entity.getProfileImageBucket(),
+                    entity.getProfileImageObjectName(), entity.getProfileImageRenditions());
+        }
+        idempotencyCache.invalidate(entity.getIdempotencyKey());
+        entity.setProfileImageObjectName(stored.objectName());
         entity.setProfileImageBucket(bucket);
-        repository.save(entity);
+        entity.setProfileImageRenditions(stored.renditions());
+    }
+
+    public Optional<String> findProfileImageUrl(Long id) {
+        return findProfileImageUrl(id, null);
+    }
+
+    // Reads only the image columns, no entity hydration or mapping on the image hot path
+    public Optional<String> findProfileImageUrl(Long id, String size) {
+        log.info("UserService -> findProfileImageUrl() called");
+        // ?size= without a value asks for the original
+        String requestedSize = StringUtils.hasText(size) ? size : null;
+        if (requestedSize != null && !imageRenditionService.sizes().contains(requestedSize)) {
+            throw new InvalidImageSizeException("Image size must be one of " + imageRenditionService.sizes());
+        }
+        // Concurrent lookups of the same id share one query, URLs are signed once per object by the cache
+        ProfileImageDTO image = readCoalescer.findProfileImage(id, () -> loadProfileImage(id));
+        if (image.objectName() == null) {
+            return Optional.empty();
+        }
+        // Sizes without a rendition, e.g. larger than the original or uploaded before renditions, get the original
+        String objectName = requestedSize == null || image.renditions() == null
+                ? image.objectName()
+                : image.renditions().getOrDefault(requestedSize, image.objectName());
+        return Optional.of(image.bucket() == null
+                ? generateDownloadUrl(objectName)
+                : generateDownloadUrl(image.bucket(), objectName));
+    }
+
+    private ProfileImageDTO loadProfileImage(Long id) {
+        return repository.findProfileImageByUserId(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Nothing found in the database with id " + id));
     }
 
-    // Generate presigned GET URL dynamically
     public String generateDownloadUrl(String objectName) {
+        return generateDownloadUrl(bucket, objectName);
+    }
+
+    // Generate presigned GET URL dynamically, signed once per cache window
+    public String generateDownloadUrl(String bucket, String objectName) {
+        return presignedUrlCache.get(bucket, objectName, () -> signDownloadUrl(bucket, objectName));
+    }
+
+    private String signDownloadUrl(String bucket, String objectName) {
+        Timer.Sample sample = minioMetrics.start();
         try {
-            return minioClient.getPresignedObjectUrl(
+            String url = minioClient.getPresignedObjectUrl(
                     GetPresignedObjectUrlArgs.builder()
                             .bucket(bucket)
                             .object(objectName)
@@ -198,7 +511,10 @@ public class UserService {
                             .expiry(profileImageUrlExpiry)
                             .build()
             );
+            minioMetrics.success(sample, MinioMetrics.GET_PRESIGNED_OBJECT_URL);
+            return url;
         } catch (Exception e) {
+            minioMetrics.failure(sample, MinioMetrics.GET_PRESIGNED_OBJECT_URL);
             throw new MinioOperationException("Failed to generate download URL for: " + objectName, e);
         }
     }
@@ -211,22 +527,24 @@ public class UserService {
         if (entity.isEmpty()) {
             throw new ResourceNotFoundException("Nothing found in the database");
         }
+        // Convert the entities to the DTOs
         return entity.stream()
-                .map(user -> {
-                    // Convert the entity to the DTO
-                    return MapperUtil.map(user, UserResponseDTO.class);
-                })
+                .map(userMapper::toResponse)
                 .collect(Collectors.toList());
     }
 
-    @Transactional(readOnly = true)
     public UserResponseDTO findById(Long id) {
         log.info("UserService -> findById() called");
+        // Concurrent reads of the same id share one read-only transaction, query and mapping
+        return readCoalescer.findById(id, () -> loadById(id));
+    }
+
+    private UserResponseDTO loadById(Long id) {
         // Fetch existing
         User entity = repository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Nothing found in the database with id " + id));
         // Convert the entity to the DTO
-        return modelMapper.map(entity, UserResponseDTO.class);
+        return userMapper.toResponse(entity);
     }
 
     @Transactional
@@ -235,14 +553,15 @@ public class UserService {
         // Fetch existing
         User entity = repository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Nothing found in the database with id " + id));
+        idempotencyCache.invalidate(entity.getIdempotencyKey());
         // Update and map all fields except password
-        modelMapper.map(request, entity);
+        userMapper.update(request, entity);
         // Update password only if provided
         if (StringUtils.hasText(request.getPassword())) {
             entity.setPassword(request.getPassword());
         }
         // Save the entity and convert it to the DTO
-        return modelMapper.map(repository.save(entity), UserResponseDTO.class);
+        return userMapper.toResponse(repository.save(entity));
     }
 
     @Transactional
@@ -251,18 +570,15 @@ public class UserService {
         // Fetch existing
         User entity = repository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Nothing found in the database with id " + id));
+        idempotencyCache.invalidate(entity.getIdempotencyKey());
         // Apply updates only if they are present
-        Optional.ofNullable(updates.getUserName()).ifPresent(entity::setUserName);
-        Optional.ofNullable(updates.getEmail()).ifPresent(entity::setEmail);
+        userMapper.partialUpdate(updates, entity);
         // Update password only if provided and must not be blank
         Optional.ofNullable(updates.getPassword())
                 .filter(StringUtils::hasText)
                 .ifPresent(entity::setPassword);
-        Optional.ofNullable(updates.getDateOfBirth()).ifPresent(entity::setDateOfBirth);
-        Optional.ofNullable(updates.getDateOfLeaving()).ifPresent(entity::setDateOfLeaving);
-        Optional.ofNullable(updates.getPostalCode()).ifPresent(entity::setPostalCode);
         // Save the entity and convert it to the DTO
-        return modelMapper.map(repository.save(entity), UserResponseDTO.class);
+        return userMapper.toResponse(repository.save(entity));
     }
 
     @Transactional
@@ -270,6 +586,7 @@ public class UserService {
         log.info("UserService -> deactivate() called");
         // Fetch existing
         repository.findById(userId).ifPresent(user -> {
+            idempotencyCache.invalidate(user.getIdempotencyKey());
             user.getAuditHistoryDTO().setDeleted(true);
             user.getAuditHistoryDTO().setDeletedDate(LocalDateTime.now());
             repository.save(user);
@@ -281,6 +598,7 @@ public class UserService {
         log.info("UserService -> activate() called");
         // Fetch existing
         repository.findById(userId).ifPresent(user -> {
+            idempotencyCache.invalidate(user.getIdempotencyKey());
             user.getAuditHistoryDTO().setDeleted(false);
             user.getAuditHistoryDTO().setDeletedDate(null);
             repository.save(user);
@@ -289,17 +607,20 @@ public class UserService {
 
     public PageResponseDTO<UserResponseDTO> search(PageRequestDTO pageRequest) {
         log.info("UserService -> search() called");
-        PaginationService<User, UserResponseDTO> paginationService =
-                new PaginationService<>(repository, modelMapper, User.class, UserResponseDTO.class);
-        return paginationService.getPaginatedData(pageRequest);
+        return userPaginationService.getPaginatedData(pageRequest);
     }
 
     @Transactional
     public void delete(Long id) {
         log.info("UserService -> delete() called");
-        if (!repository.existsById(id)) {
-            throw new ResourceNotFoundException("Nothing found in the database with id " + id);
+        User entity = repository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Nothing found in the database with id " + id));
+        idempotencyCache.invalidate(entity.getIdempotencyKey());
+        repository.delete(entity);
+        // Released by the outbox once the delete is committed, a rollback keeps both
+        if (entity.getProfileImageObjectName() != null) {
+            imageOutbox.enqueue(ImageOutboxEntry.Operation.RELEASE, entity.getProfileImageBucket(),
+                    entity.getProfileImageObjectName(), entity.getProfileImageRenditions());
         }
-        repository.deleteById(id);
     }
 }
\ No newline at end of file
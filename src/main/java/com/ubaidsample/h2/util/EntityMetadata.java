@@ -0,0 +1,180 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.util;
+
+import com.ubaidsample.h2.annotation.Searchable;
+import com.ubaidsample.h2.exception.InvalidFilterException;
+import jakarta.persistence.*;
+import jakarta.persistence.criteria.Path;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Reflective view of an entity resolved once per class: its id, the filterable attribute paths including
+ * embedded ones such as "auditHistoryDTO.deleted", which of them can be sorted on or searched, and the
+ * converter for filter values of each. Specification building and sort validation read from here instead
+ * of calling getDeclaredField per request.
+ */
+public final class EntityMetadata<T> {
+
+    private static final ClassValue<EntityMetadata<?>> CACHE = new ClassValue<>() {
+        @Override
+        protected EntityMetadata<?> computeValue(Class<?> type) {
+            return new EntityMetadata<>(type);
+        }
+    };
+
+    private final Class<T> entityClass;
+    private final Map<String, Attribute> attributes = new HashMap<>();
+    private final List<Attribute> searchableAttributes = new ArrayList<>();
+    private final List<Attribute> searchableView = Collections.unmodifiableList(searchableAttributes);
+    private final Attribute idAttribute;
+
+    private EntityMetadata(Class<T> entityClass) {
+        this.entityClass = entityClass;
+        collect(entityClass, "", new Field[0]);
+        this.idAttribute = attributes.values().stream()
+                .filter(attribute -> attribute.leaf().isAnnotationPresent(Id.class))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Entity " + entityClass.getSimpleName() + " does not have a field annotated with @Id"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMetadata<T> of(Class<T> entityClass) {
+        return (EntityMetadata<T>) CACHE.get(entityClass);
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public Attribute getIdAttribute() {
+        return idAttribute;
+    }
+
+    public List<Attribute> getSearchableAttributes() {
+        return searchableView;
+    }
+
+    // Null when the entity has no such attribute
+    public Attribute findAttribute(String path) {
+        return path == null ? null : attributes.get(path);
+    }
+
+    public Attribute getAttribute(String path) {
+        Attribute attribute = findAttribute(path);
+        if (attribute == null) {
+            throw new InvalidFilterException("Unknown field for " + entityClass.getSimpleName() + ": " + path);
+        }
+        return attribute;
+    }
+
+    private void collect(Class<?> type, String prefix, Field[] parents) {
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isAnnotationPresent(Transient.class)) {
+                continue;
+            }
+            field.trySetAccessible();
+            Field[] chain = Arrays.copyOf(parents, parents.length + 1);
+            chain[parents.length] = field;
+            if (field.isAnnotationPresent(Embedded.class) || field.getType().isAnnotationPresent(Embeddable.class)) {
+                collect(field.getType(), prefix + field.getName() + ".", chain);
+                continue;
+            }
+            if (field.isAnnotationPresent(OneToMany.class) || field.isAnnotationPresent(ManyToMany.class)
+                    || field.isAnnotationPresent(ElementCollection.class)) {
+                continue;
+            }
+            Attribute attribute = new Attribute(prefix + field.getName(), chain);
+            attributes.put(attribute.path(), attribute);
+            if (field.isAnnotationPresent(Searchable.class) && field.getType().equals(String.class)) {
+                searchableAttributes.add(attribute);
+            }
+        }
+    }
+
+    /**
+     * One attribute path of the entity with everything a request needs pre-resolved.
+     */
+    public static final class Attribute {
+
+        private final String path;
+        private final String[] parts;
+        private final Field[] chain;
+        private final Class<?> type;
+        private final Function<Object, Object> converter;
+        private final boolean nullable;
+        private final boolean sortable;
+
+        private Attribute(String path, Field[] chain) {
+            this.path = path;
+            this.parts = path.split("\\.");
+            this.chain = chain;
+            this.type = chain[chain.length - 1].getType();
+            this.converter = EntityUtil.converterFor(type);
+            Column column = leaf().getAnnotation(Column.class);
+            this.nullable = !type.isPrimitive() && (column == null || column.nullable());
+            this.sortable = type.isPrimitive() || Comparable.class.isAssignableFrom(type);
+        }
+
+        public String path() {
+            return path;
+        }
+
+        public Class<?> type() {
+            return type;
+        }
+
+        public boolean isNullable() {
+            return nullable;
+        }
+
+        public boolean isSortable() {
+            return sortable;
+        }
+
+        Field leaf() {
+            return chain[chain.length - 1];
+        }
+
+        // Converts a filter value, or each value of a collection, to the attribute type
+        public Object convert(Object value) {
+            return EntityUtil.convertValue(converter, value);
+        }
+
+        public <X> Path<X> toPath(Path<?> root) {
+            Path<?> path = root;
+            for (String part : parts) {
+                path = path.get(part);
+            }
+            @SuppressWarnings("unchecked")
+            Path<X> typed = (Path<X>) path;
+            return typed;
+        }
+
+        // Reads the attribute from an entity instance, null when an embedded parent is null
+        public Object read(Object entity) {
+            Object value = entity;
+            try {
+                for (Field field : chain) {
+                    if (value == null) {
+                        return null;
+                    }
+                    value = field.get(value);
+                }
+                return value;
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot read " + path, e);
+            }
+        }
+    }
+}
@@ -14,6 +14,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.function.Function;
 
 public class EntityUtil {
 
@@ -32,42 +33,54 @@ public class EntityUtil {
      * Converts a value (or collection of values) to the target type.
      * Supports single values and collections (lists, sets).
      */
-    @SuppressWarnings("unchecked")
     public static <T> Object convertValue(Class<T> targetType, Object value) {
+        return convertValue(converterFor(targetType), value);
+    }
+
+    /**
+     * Converts a value (or collection of values) with a converter resolved once by converterFor.
+     */
+    public static Object convertValue(Function<Object, Object> converter, Object value) {
 
         if (value == null) return null;
         // Handle collections recursively
         if (value instanceof Collection<?> col) {
             return col.stream()
-                    .map(v -> convertValue(targetType, v))
+                    .map(v -> convertValue(converter, v))
                     .toList();
         }
-        // Convert single value
+        return converter.apply(value);
+    }
+
+    /**
+     * Resolves the conversion of a single non-null value to the target type.
+     * For unsupported or custom types, values are passed through as-is.
+     */
+    public static Function<Object, Object> converterFor(Class<?> targetType) {
         if (targetType.equals(String.class)) {
-            return value.toString();
+            return Object::toString;
         }
         if (targetType.equals(Integer.class) || targetType.equals(int.class)) {
-            return Integer.valueOf(value.toString());
+            return value -> value instanceof Integer ? value : Integer.valueOf(value.toString());
         }
         if (targetType.equals(Long.class) || targetType.equals(long.class)) {
-            return Long.valueOf(value.toString());
+            return value -> value instanceof Long ? value : Long.valueOf(value.toString());
         }
         if (targetType.equals(Double.class) || targetType.equals(double.class)) {
-            return Double.valueOf(value.toString());
+            return value -> value instanceof Double ? value : Double.valueOf(value.toString());
         }
         if (targetType.equals(Float.class) || targetType.equals(float.class)) {
-            return Float.valueOf(value.toString());
+            return value -> value instanceof Float ? value : Float.valueOf(value.toString());
         }
         if (targetType.equals(Boolean.class) || targetType.equals(boolean.class)) {
-            return Boolean.valueOf(value.toString());
+            return value -> value instanceof Boolean ? value : Boolean.valueOf(value.toString());
         }
         if (targetType.equals(LocalDate.class)) {
-            return LocalDate.parse(value.toString());
+            return value -> value instanceof LocalDate ? value : LocalDate.parse(value.toString());
         }
         if (targetType.equals(LocalDateTime.class)) {
-            return LocalDateTime.parse(value.toString());
+            return value -> value instanceof LocalDateTime ? value : LocalDateTime.parse(value.toString());
         }
-        // For unsupported or custom types, return as-is
-        return value;
+        return Function.identity();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,132 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory term index: text is split into lower-case alphanumeric terms, each query term matches every indexed
+ * term it is a prefix of, and all query terms must match. Terms are kept sorted so a prefix is a range lookup.
+ * Reads are lock-free, writes for a document are serialized so its old terms are removed before new ones are added.
+ */
+public class InvertedIndex<ID> {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Where a word can start for a LIKE search, '_' escaped with '\'
+    private static final String[] LIKE_WORD_STARTS = {" ", ".", "@", "\\_", "-", "+"};
+
+    private final ConcurrentSkipListMap<String, Set<ID>> postings = new ConcurrentSkipListMap<>();
+    private final Map<ID, Set<String>> documents = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public void index(ID id, Collection<String> texts) {
+        Set<String> terms = new HashSet<>();
+        for (String text : texts) {
+            terms.addAll(tokenize(text));
+        }
+        writeLock.lock();
+        try {
+            removeTerms(id);
+            for (String term : terms) {
+                postings.computeIfAbsent(term, key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+            documents.put(id, terms);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(ID id) {
+        writeLock.lock();
+        try {
+            removeTerms(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void clear() {
+        writeLock.lock();
+        try {
+            postings.clear();
+            documents.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public Set<ID> search(String query) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return Set.of();
+        }
+        Set<ID> result = null;
+        for (String queryTerm : queryTerms) {
+            Set<ID> matches = new HashSet<>();
+            // Every term starting with queryTerm sorts between queryTerm and queryTerm + '￿'
+            for (Set<ID> ids : postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, true).values()) {
+                matches.addAll(ids);
+            }
+            if (result == null) {
+                result = matches;
+            } else {
+                result.retainAll(matches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private void removeTerms(ID id) {
+        Set<String> terms = documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            postings.computeIfPresent(term, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * LIKE patterns, with escape character '\', that match lower-cased text containing a word starting with
+     * {@code term}, for searching the same way without the index. A word starts at the beginning of the text or
+     * after one of " .@_-+", where the index also splits on any other non-alphanumeric character.
+     */
+    public static List<String> wordPrefixPatterns(String term) {
+        List<String> patterns = new ArrayList<>(LIKE_WORD_STARTS.length + 1);
+        patterns.add(term + "%");
+        for (String wordStart : LIKE_WORD_STARTS) {
+            patterns.add("%" + wordStart + term + "%");
+        }
+        return patterns;
+    }
+
+    // Lower-case alphanumeric terms, for indexed text and queries alike
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+}
@@ -0,0 +1,2 @@
+-- Next generated user id continues after the rows seeded by import.sql
+ALTER TABLE USERS ALTER COLUMN user_id RESTART WITH 5;
@@ -0,0 +1,2 @@
+-- Next generated user id continues after the rows seeded by import.sql
+ALTER SEQUENCE users_seq RESTART WITH 5;
@@ -0,0 +1,59 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.dto.common;
+
+import com.ubaidsample.h2.exception.InvalidFilterException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodeAndDecodeRoundTrip() {
+        KeysetCursor cursor = KeysetCursor.of("dateOfLeaving", LocalDate.of(2024, 12, 31), 42L);
+
+        KeysetCursor decoded = KeysetCursor.decode(cursor.encode());
+
+        assertThat(decoded).isEqualTo(new KeysetCursor("dateOfLeaving", "2024-12-31", "42"));
+    }
+
+    @Test
+    void sortValueMayContainTheSeparator() {
+        KeysetCursor cursor = KeysetCursor.of("userName", "first\nsecond\nthird", 7);
+
+        assertThat(KeysetCursor.decode(cursor.encode()).sortValue()).isEqualTo("first\nsecond\nthird");
+    }
+
+    @Test
+    void encodedCursorIsUrlSafeWithoutPadding() {
+        String encoded = KeysetCursor.of("email", "a+b/c?d=e@example.com", 1).encode();
+
+        assertThat(encoded).doesNotContain("+", "/", "=");
+    }
+
+    @Test
+    void rejectsCursorThatIsNotBase64() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not base64!"))
+                .isInstanceOf(InvalidFilterException.class)
+                .hasMessageStartingWith("Invalid cursor");
+    }
+
+    @Test
+    void rejectsCursorWithMissingParts() {
+        String encoded = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("userId\n5".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> KeysetCursor.decode(encoded)).isInstanceOf(InvalidFilterException.class);
+    }
+}
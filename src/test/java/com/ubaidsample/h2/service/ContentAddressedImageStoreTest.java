@@ -0,0 +1,272 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.entity.ImageObject;
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
+import com.ubaidsample.h2.repository.ImageObjectRepository;
+import com.ubaidsample.h2.repository.ImageOutboxRepository;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectArgs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// The outbox is only dispatched when a test asks for it
+@SpringBootTest(properties = "app.image.outbox.poll-interval=1h")
+class ContentAddressedImageStoreTest {
+
+    private static final String BUCKET = "user-images";
+    private static final Map<String, String> RENDITIONS = Map.of("thumb", "thumb.jpg");
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private ImageOutboxRepository outboxRepository;
+
+    @MockitoBean
+    private MinioClient minioClient;
+
+    private final String objectName = "sha256-" + UUID.randomUUID() + ".jpg";
+    private final AtomicInteger stores = new AtomicInteger();
+    private final AtomicInteger acquired = new AtomicInteger();
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        imageObjectRepository.deleteAll();
+    }
+
+    @Test
+    void firstUploadStoresTheContentAndLaterOnesReuseIt() {
+        assertThat(acquire(store())).isEqualTo(RENDITIONS);
+        assertThat(acquire(store())).isEqualTo(RENDITIONS);
+
+        ImageObject object = object();
+        assertThat(stores).hasValue(1);
+        assertThat(acquired).hasValue(2);
+        assertThat(object.getRefCount()).isEqualTo(2);
+        assertThat(object.isStored()).isTrue();
+        assertThat(object.getRenditions()).isEqualTo(RENDITIONS);
+    }
+
+    @Test
+    void concurrentFirstUploadsOfTheSameContentAllTakeAReference() throws Exception {
+        int uploads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        try {
+            List<Future<Map<String, String>>> results = new ArrayList<>();
+            for (int i = 0; i < uploads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return acquire(store());
+                }));
+            }
+            start.countDown();
+            for (Future<Map<String, String>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(RENDITIONS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(acquired).hasValue(uploads);
+        assertThat(object().getRefCount()).isEqualTo(uploads);
+        assertThat(object().isStored()).isTrue();
+    }
+
+    @Test
+    void failedStoreKeepsTheReferenceForTheGuard() {
+        assertThatThrownBy(() -> acquire(() -> {
+            throw new IllegalStateException("Object store unavailable");
+        })).hasMessage("Object store unavailable");
+
+        assertThat(acquired).hasValue(1);
+        assertThat(object().getRefCount()).isEqualTo(1);
+        assertThat(object().isStored()).isFalse();
+
+        // The next upload of the content writes it again
+        assertThat(acquire(store())).isEqualTo(RENDITIONS);
+        assertThat(stores).hasValue(1);
+        assertThat(object().isStored()).isTrue();
+    }
+
+    @Test
+    void lastReleaseQueuesAPurgeAndKeepsTheRow() {
+        acquire(store());
+        acquire(store());
+
+        assertThat(imageStore.release(objectName)).isTrue();
+        assertThat(object().getRefCount()).isEqualTo(1);
+        assertThat(outboxRepository.findAll()).isEmpty();
+
+        assertThat(imageStore.release(objectName)).isTrue();
+        assertThat(object().getRefCount()).isZero();
+        assertThat(outboxRepository.findAll())
+                .singleElement()
+                .satisfies(entry -> {
+                    assertThat(entry.getOperation()).isEqualTo(ImageOutboxEntry.Operation.PURGE);
+                    assertThat(entry.getObjectName()).isEqualTo(objectName);
+                    assertThat(entry.getRenditions()).isEqualTo(RENDITIONS);
+                });
+    }
+
+    @Test
+    void releaseOfAnObjectThatIsNotContentAddressedIsLeftToTheCaller() {
+        assertThat(imageStore.release("user-1-" + UUID.randomUUID() + ".jpg")).isFalse();
+        assertThat(outboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void removeUnreferencedKeepsReferencedContent() throws Exception {
+        acquire(store());
+
+        assertThat(imageStore.removeUnreferenced(BUCKET, objectName, List.of(objectName, "thumb.jpg"))).isEmpty();
+        assertThat(imageObjectRepository.existsById(objectName)).isTrue();
+        verify(minioClient, never()).removeObject(any());
+    }
+
+    @Test
+    void removeUnreferencedRemovesReleasedContent() throws Exception {
+        acquire(store());
+        imageStore.release(objectName);
+
+        assertThat(imageStore.removeUnreferenced(BUCKET, objectName, List.of(objectName, "thumb.jpg")))
+                .contains(List.of(objectName, "thumb.jpg"));
+        assertThat(imageObjectRepository.existsById(objectName)).isFalse();
+        verify(minioClient, times(2)).removeObject(any(RemoveObjectArgs.class));
+    }
+
+    @Test
+    void removalRunsAfterItsTombstoneCommittedAndUploadsWaitForIt() throws Exception {
+        acquire(store());
+        imageStore.release(objectName);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        List<Future<Map<String, String>>> upload = new ArrayList<>();
+        try {
+            doAnswer(invocation -> {
+                // The tombstone is committed, and no transaction holds the row lock across the removal
+                assertThat(TransactionSynchronizationManager.isActualTransactionActive()).isFalse();
+                assertThat(object().getDeletingUntil()).isNotNull();
+                assertThat(object().isStored()).isFalse();
+                if (upload.isEmpty()) {
+                    upload.add(executor.submit(() -> acquire(store())));
+                    assertThatThrownBy(() -> upload.get(0).get(200, TimeUnit.MILLISECONDS))
+                            .isInstanceOf(TimeoutException.class);
+                }
+                return null;
+            }).when(minioClient).removeObject(any(RemoveObjectArgs.class));
+
+            assertThat(imageStore.removeUnreferenced(BUCKET, objectName, List.of(objectName, "thumb.jpg")))
+                    .contains(List.of(objectName, "thumb.jpg"));
+
+            // The upload went on once the objects were gone, and wrote the content again
+            assertThat(upload.get(0).get(10, TimeUnit.SECONDS)).isEqualTo(RENDITIONS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(stores).hasValue(2);
+        assertThat(object().getRefCount()).isEqualTo(1);
+        assertThat(object().isStored()).isTrue();
+        assertThat(object().getDeletingUntil()).isNull();
+    }
+
+    @Test
+    void partlyFailedRemovalKeepsTheRowForTheRetry() throws Exception {
+        acquire(store());
+        imageStore.release(objectName);
+        doAnswer(invocation -> {
+            if (invocation.<RemoveObjectArgs>getArgument(0).object().equals("thumb.jpg")) {
+                throw new IllegalStateException("Object store unavailable");
+            }
+            return null;
+        }).when(minioClient).removeObject(any(RemoveObjectArgs.class));
+
+        assertThat(imageStore.removeUnreferenced(BUCKET, objectName, List.of(objectName, "thumb.jpg")))
+                .contains(List.of(objectName));
+
+        ImageObject object = object();
+        assertThat(object.getRefCount()).isZero();
+        assertThat(object.isStored()).isFalse();
+        assertThat(object.getDeletingUntil()).isNull();
+    }
+
+    @Test
+    void uploadTakesOverARemovalPastItsLease() {
+        acquire(store());
+        imageStore.release(objectName);
+        // A removal that died between its tombstone and the row delete
+        ImageObject object = object();
+        object.setStored(false);
+        object.setDeletingUntil(LocalDateTime.now().minusMinutes(1));
+        imageObjectRepository.save(object);
+
+        assertThat(acquire(store())).isEqualTo(RENDITIONS);
+
+        assertThat(stores).hasValue(2);
+        assertThat(object().getRefCount()).isEqualTo(1);
+        assertThat(object().getDeletingUntil()).isNull();
+    }
+
+    @Test
+    void removalInProgressIsNotStartedTwice() throws Exception {
+        acquire(store());
+        imageStore.release(objectName);
+        ImageObject object = object();
+        object.setDeletingUntil(LocalDateTime.now().plusMinutes(1));
+        imageObjectRepository.save(object);
+
+        assertThat(imageStore.removeUnreferenced(BUCKET, objectName, List.of(objectName, "thumb.jpg"))).isEmpty();
+        verify(minioClient, never()).removeObject(any());
+    }
+
+    private Map<String, String> acquire(Supplier<Map<String, String>> store) {
+        return imageStore.acquire(BUCKET, objectName, 100, store, acquired::incrementAndGet);
+    }
+
+    private Supplier<Map<String, String>> store() {
+        return () -> {
+            stores.incrementAndGet();
+            return RENDITIONS;
+        };
+    }
+
+    private ImageObject object() {
+        return imageObjectRepository.findById(objectName).orElseThrow();
+    }
+}
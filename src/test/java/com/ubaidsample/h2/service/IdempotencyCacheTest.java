@@ -0,0 +1,195 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.exception.ResourceAlreadyExistsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger creates = new AtomicInteger();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void retryIsAnsweredFromTheCache() {
+        IdempotencyCache cache = cache(Duration.ofSeconds(5));
+
+        UserResponseDTO first = cache.get("key", create(1L));
+        UserResponseDTO retry = cache.get("key", create(2L));
+
+        assertThat(retry).isSameAs(first);
+        assertThat(creates).hasValue(1);
+        assertThat(requests("cached")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyCreateOnce() throws Exception {
+        IdempotencyCache cache = cache(Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<UserResponseDTO> first = executor.submit(() -> cache.get("key", blockingCreate(started, release)));
+        started.await(5, TimeUnit.SECONDS);
+        Future<UserResponseDTO> duplicate = executor.submit(() -> cache.get("key", create(2L)));
+        awaitRequests("joined", 1);
+        release.countDown();
+
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        assertThat(creates).hasValue(1);
+    }
+
+    @Test
+    void joinedRequestFailsLikeTheFirstAndIsNotCached() throws Exception {
+        IdempotencyCache cache = cache(Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ResourceAlreadyExistsException failure = new ResourceAlreadyExistsException("User already exists");
+
+        Future<UserResponseDTO> first = executor.submit(() -> cache.get("key", () -> {
+            started.countDown();
+            await(release);
+            throw failure;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        Future<UserResponseDTO> duplicate = executor.submit(() -> cache.get("key", create(2L)));
+        awaitRequests("joined", 1);
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        assertThatThrownBy(() -> duplicate.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        assertThat(cache.get("key", create(3L)).getUserId()).isEqualTo(3L);
+    }
+
+    @Test
+    void stuckRequestIsNotWaitedForPastTheTimeout() throws Exception {
+        IdempotencyCache cache = cache(Duration.ofMillis(100));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.submit(() -> cache.get("key", blockingCreate(started, release)));
+        started.await(5, TimeUnit.SECONDS);
+        UserResponseDTO duplicate = cache.get("key", create(2L));
+        release.countDown();
+
+        assertThat(duplicate.getUserId()).isEqualTo(2L);
+    }
+
+    @Test
+    void invalidatedKeyIsCreatedAgain() {
+        IdempotencyCache cache = cache(Duration.ofSeconds(5));
+        cache.get("key", create(1L));
+
+        cache.invalidate("key");
+        cache.invalidate(null);
+
+        assertThat(cache.get("key", create(2L)).getUserId()).isEqualTo(2L);
+        assertThat(creates).hasValue(2);
+    }
+
+    @Test
+    void invalidationInATransactionWaitsForTheCommit() {
+        IdempotencyCache cache = cache(Duration.ofSeconds(5));
+        cache.get("key", create(1L));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate("key");
+            // A retry before the commit must not read and cache the row the transaction is still changing
+            assertThat(cache.get("key", create(2L)).getUserId()).isEqualTo(1L);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get("key", create(3L)).getUserId()).isEqualTo(3L);
+        assertThat(creates).hasValue(2);
+    }
+
+    @Test
+    void invalidationInARolledBackTransactionKeepsTheEntry() {
+        IdempotencyCache cache = cache(Duration.ofSeconds(5));
+        cache.get("key", create(1L));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate("key");
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cache.get("key", create(2L)).getUserId()).isEqualTo(1L);
+        assertThat(creates).hasValue(1);
+    }
+
+    private IdempotencyCache cache(Duration inFlightTimeout) {
+        return new IdempotencyCache(meterRegistry, Duration.ofMinutes(10), 100, inFlightTimeout);
+    }
+
+    private Supplier<UserResponseDTO> create(long userId) {
+        return () -> {
+            creates.incrementAndGet();
+            UserResponseDTO user = new UserResponseDTO();
+            user.setUserId(userId);
+            return user;
+        };
+    }
+
+    private Supplier<UserResponseDTO> blockingCreate(CountDownLatch started, CountDownLatch release) {
+        return () -> {
+            started.countDown();
+            await(release);
+            return create(1L).get();
+        };
+    }
+
+    private double requests(String outcome) {
+        return meterRegistry.get("user.idempotency.requests").tag("outcome", outcome).counter().count();
+    }
+
+    // The joined counter goes up right before the duplicate starts waiting
+    private void awaitRequests(String outcome, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (requests(outcome) < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(requests(outcome)).isEqualTo(count);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
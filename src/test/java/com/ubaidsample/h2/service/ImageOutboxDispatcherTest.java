@@ -0,0 +1,189 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
+import com.ubaidsample.h2.entity.ImageOutboxEntry.Operation;
+import com.ubaidsample.h2.repository.ImageObjectRepository;
+import com.ubaidsample.h2.repository.ImageOutboxRepository;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectsArgs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The outbox is only dispatched when a test asks for it
+@SpringBootTest(properties = "app.image.outbox.poll-interval=1h")
+class ImageOutboxDispatcherTest {
+
+    private static final String BUCKET = "user-images";
+
+    @Autowired
+    private ImageOutboxDispatcher dispatcher;
+
+    @Autowired
+    private ImageOutbox imageOutbox;
+
+    @Autowired
+    private ImageOutboxRepository outboxRepository;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private MinioClient minioClient;
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        imageObjectRepository.deleteAll();
+    }
+
+    @Test
+    void dueDeleteRemovesTheObjectAndItsRenditions() {
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+        imageOutbox.enqueue(Operation.DELETE, BUCKET, "user-1-a.jpg", Map.of("thumb", "user-1-a-thumb.jpg"));
+
+        assertThat(dispatcher.dispatchRound()).isEqualTo(1);
+
+        ArgumentCaptor<RemoveObjectsArgs> args = ArgumentCaptor.forClass(RemoveObjectsArgs.class);
+        verify(minioClient).removeObjects(args.capture());
+        assertThat(args.getValue().bucket()).isEqualTo(BUCKET);
+        assertThat(args.getValue().objects()).extracting("name").containsExactly("user-1-a.jpg", "user-1-a-thumb.jpg");
+        assertThat(outboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void failedDeleteIsRetriedAfterTheBackoff() {
+        when(minioClient.removeObjects(any())).thenThrow(new IllegalStateException("Object store unavailable"));
+        imageOutbox.enqueue(Operation.DELETE, BUCKET, "user-1-a.jpg", Map.of());
+
+        LocalDateTime before = LocalDateTime.now();
+        assertThat(dispatcher.dispatchRound()).isEqualTo(1);
+
+        ImageOutboxEntry entry = single();
+        assertThat(entry.getAttempts()).isEqualTo(1);
+        assertThat(entry.getLastError()).isEqualTo("Object store unavailable");
+        // initial-backoff of 1s for the first attempt
+        assertThat(entry.getAvailableAt()).isAfterOrEqualTo(before.plusSeconds(1)).isBefore(before.plusSeconds(30));
+        assertThat(dispatcher.dispatchRound()).isZero();
+    }
+
+    @Test
+    void guardIsCancelledUntilItIsDue() {
+        String guardKey = imageOutbox.guard(Operation.DELETE, BUCKET, "user-1-a.jpg", Map.of());
+
+        assertThat(dispatcher.dispatchRound()).isZero();
+        assertThat(imageOutbox.cancelGuard(guardKey)).isTrue();
+        assertThat(outboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void firedGuardIsDispatchedAndNoLongerCancelled() {
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+        String guardKey = imageOutbox.guard(Operation.DELETE, BUCKET, "user-1-a.jpg", Map.of());
+
+        imageOutbox.fireGuard(guardKey);
+
+        assertThat(imageOutbox.cancelGuard(guardKey)).isFalse();
+        assertThat(dispatcher.dispatchRound()).isEqualTo(1);
+        verify(minioClient).removeObjects(any());
+        assertThat(outboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void claimedGuardIsNoLongerCancelledOrFired() {
+        when(minioClient.removeObjects(any())).thenThrow(new IllegalStateException("Object store unavailable"));
+        String guardKey = imageOutbox.guard(Operation.DELETE, BUCKET, "user-1-a.jpg", Map.of());
+        imageOutbox.fireGuard(guardKey);
+        dispatcher.dispatchRound();
+
+        // The failed round left its claim on the entry, which now waits for the retry
+        LocalDateTime retryAt = single().getAvailableAt();
+        imageOutbox.fireGuard(guardKey);
+
+        assertThat(imageOutbox.cancelGuard(guardKey)).isFalse();
+        assertThat(single().getAvailableAt()).isEqualTo(retryAt);
+    }
+
+    @Test
+    void releaseDropsOneReference() {
+        String objectName = "sha256-" + UUID.randomUUID() + ".jpg";
+        imageStore.acquire(BUCKET, objectName, 100, Map::of, () -> {});
+        imageStore.acquire(BUCKET, objectName, 100, Map::of, () -> {});
+        imageOutbox.enqueue(Operation.RELEASE, BUCKET, objectName, Map.of());
+
+        assertThat(dispatcher.dispatchRound()).isEqualTo(1);
+        assertThat(dispatcher.dispatchRound()).isZero();
+
+        assertThat(imageObjectRepository.findById(objectName).orElseThrow().getRefCount()).isEqualTo(1);
+        assertThat(outboxRepository.findAll()).isEmpty();
+        verify(minioClient, never()).removeObjects(any());
+    }
+
+    @Test
+    void releaseOfAnObjectThatIsNotContentAddressedDeletesIt() {
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+        imageOutbox.enqueue(Operation.RELEASE, BUCKET, "user-1-a.jpg", Map.of());
+
+        assertThat(dispatcher.dispatchRound()).isEqualTo(1);
+
+        verify(minioClient).removeObjects(any());
+        assertThat(outboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void entryClaimedByAnotherRoundIsLeftAloneUntilTheLeaseRunsOut() {
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+        imageOutbox.enqueue(Operation.DELETE, BUCKET, "user-1-a.jpg", Map.of());
+        Long id = single().getId();
+
+        claim(id, LocalDateTime.now().plusMinutes(5));
+        assertThat(dispatcher.dispatchRound()).isZero();
+        verify(minioClient, never()).removeObjects(any());
+
+        // The other round died, its lease ran out
+        claim(id, LocalDateTime.now().minusSeconds(1));
+        assertThat(dispatcher.dispatchRound()).isEqualTo(1);
+        verify(minioClient).removeObjects(any());
+        assertThat(outboxRepository.findAll()).isEmpty();
+    }
+
+    private void claim(Long id, LocalDateTime leaseUntil) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> outboxRepository.claim(
+                List.of(id), UUID.randomUUID().toString(), LocalDateTime.now().plusMinutes(10), leaseUntil));
+    }
+
+    private ImageOutboxEntry single() {
+        List<ImageOutboxEntry> entries = outboxRepository.findAll();
+        assertThat(entries).hasSize(1);
+        return entries.get(0);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.exception.FileTooLargeException;
+import com.ubaidsample.h2.exception.InvalidFileTypeException;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageUploadValidatorTest {
+
+    private static final String JPEG = "image/jpeg";
+    private static final String PNG = "image/png";
+
+    private final ImageUploadValidator validator =
+            new ImageUploadValidator(" image/jpeg, image/png ,", 25_000_000, DataSize.ofKilobytes(1));
+
+    @Test
+    void readsDimensionsOfRealImages() throws IOException {
+        assertThat(validator.inspect(stream(image("jpg", 640, 480)), JPEG))
+                .isEqualTo(new ImageUploadValidator.ImageHeader(JPEG, 640, 480));
+        assertThat(validator.inspect(stream(image("png", 32, 16)), PNG))
+                .isEqualTo(new ImageUploadValidator.ImageHeader(PNG, 32, 16));
+    }
+
+    @Test
+    void resetsTheStreamToTheFirstByte() throws IOException {
+        byte[] png = image("png", 8, 8);
+        InputStream is = stream(png);
+
+        validator.inspect(is, PNG);
+
+        assertThat(is.readAllBytes()).isEqualTo(png);
+    }
+
+    @Test
+    void skipsSegmentsBeforeTheJpegFrameHeader() throws IOException {
+        byte[] jpeg = concat(new byte[]{(byte) 0xFF, (byte) 0xD8},
+                segment(0xE0, new byte[14]), segment(0xDB, new byte[65]), segment(0xC4, new byte[30]),
+                segment(0xC2, frame(1200, 800)));
+
+        assertThat(validator.inspect(stream(jpeg), JPEG)).isEqualTo(new ImageUploadValidator.ImageHeader(JPEG, 800, 1200));
+    }
+
+    @Test
+    void rejectsContentOfAnotherTypeThanDeclared() throws IOException {
+        byte[] png = image("png", 8, 8);
+
+        assertThatThrownBy(() -> validator.inspect(stream(png), JPEG))
+                .isInstanceOf(InvalidFileTypeException.class)
+                .hasMessageContaining(JPEG);
+        assertThatThrownBy(() -> validator.inspect(stream("GIF89a....".getBytes()), PNG))
+                .isInstanceOf(InvalidFileTypeException.class);
+    }
+
+    @Test
+    void rejectsImagesOverThePixelLimit() {
+        assertThatThrownBy(() -> validator.inspect(stream(pngHeader(30_000, 30_000)), PNG))
+                .isInstanceOf(FileTooLargeException.class)
+                .hasMessageContaining("30000x30000");
+    }
+
+    @Test
+    void rejectsTruncatedHeaders() throws IOException {
+        byte[] png = image("png", 8, 8);
+
+        assertThatThrownBy(() -> validator.inspect(stream(Arrays.copyOf(png, 20)), PNG))
+                .isInstanceOf(InvalidFileTypeException.class)
+                .hasMessageContaining("Could not read");
+    }
+
+    @Test
+    void rejectsHeadersLongerThanTheLimit() {
+        // A 2 KB segment before the frame header, over the 1 KB limit
+        byte[] jpeg = concat(new byte[]{(byte) 0xFF, (byte) 0xD8}, segment(0xE1, new byte[2048]),
+                segment(0xC0, frame(10, 10)));
+
+        assertThatThrownBy(() -> validator.inspect(stream(jpeg), JPEG)).isInstanceOf(InvalidFileTypeException.class);
+    }
+
+    @Test
+    void checksContentTypeAgainstTheAllowedTypes() {
+        validator.validateContentType(JPEG);
+        validator.validateContentType(PNG);
+
+        assertThatThrownBy(() -> validator.validateContentType("image/gif")).isInstanceOf(InvalidFileTypeException.class);
+        assertThatThrownBy(() -> validator.validateContentType("")).isInstanceOf(InvalidFileTypeException.class);
+        assertThatThrownBy(() -> validator.validateContentType(null)).isInstanceOf(InvalidFileTypeException.class);
+    }
+
+    @Test
+    void checksFileExtensionIgnoringCase() {
+        validator.validateFileName("photo.JPG");
+        validator.validateFileName("photo.jpeg");
+        validator.validateFileName("a.b.png");
+
+        assertThatThrownBy(() -> validator.validateFileName("photo.gif")).isInstanceOf(InvalidFileTypeException.class);
+        assertThatThrownBy(() -> validator.validateFileName("png")).isInstanceOf(InvalidFileTypeException.class);
+        assertThatThrownBy(() -> validator.validateFileName(null)).isInstanceOf(InvalidFileTypeException.class);
+    }
+
+    private static InputStream stream(byte[] bytes) {
+        return new BufferedInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static byte[] image(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    // Signature and IHDR only, nothing a decoder would need to read the dimensions
+    private static byte[] pngHeader(int width, int height) {
+        return ByteBuffer.allocate(33)
+                .put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+                .putInt(13).put("IHDR".getBytes()).putInt(width).putInt(height)
+                .put(new byte[]{8, 2, 0, 0, 0}).putInt(0)
+                .array();
+    }
+
+    // Marker, big-endian length including itself, then the payload
+    private static byte[] segment(int marker, byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length)
+                .put((byte) 0xFF).put((byte) marker).putShort((short) (payload.length + 2)).put(payload)
+                .array();
+    }
+
+    // Precision, height, width and one component
+    private static byte[] frame(int height, int width) {
+        return ByteBuffer.allocate(9)
+                .put((byte) 8).putShort((short) height).putShort((short) width).put((byte) 1).put(new byte[]{1, 0x11, 0})
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
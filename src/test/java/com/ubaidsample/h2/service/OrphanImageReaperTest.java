@@ -0,0 +1,166 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.repository.ImageObjectRepository;
+import com.ubaidsample.h2.repository.ImageOutboxRepository;
+import com.ubaidsample.h2.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The outbox is never dispatched on its own, so it leaves the image rows to the test
+@SpringBootTest(properties = "app.image.outbox.poll-interval=1h")
+class OrphanImageReaperTest {
+
+    private static final String BUCKET = "user-images";
+    private static final ZonedDateTime OLD = ZonedDateTime.now().minusHours(2);
+    private static final ZonedDateTime NEW = ZonedDateTime.now().minusMinutes(1);
+
+    @Autowired
+    private MinioMetrics minioMetrics;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private ImageOutboxRepository outboxRepository;
+
+    @Autowired
+    private ContentAddressedImageStore imageStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private MinioClient minioClient;
+
+    private final String referencedContent = contentName();
+    private final String orphanedContent = contentName();
+
+    @BeforeEach
+    void listBucket() {
+        jdbcTemplate.update("update users set profile_image_object_name = 'user-3-kept.jpg' where user_id = 3");
+        imageStore.acquire(BUCKET, referencedContent, 100, Map::of, () -> {});
+        List<Result<Item>> listing = List.of(
+                item("user-3-kept.jpg", OLD),
+                item("user-3-old.jpg", OLD),
+                item("user-3-new.jpg", NEW),
+                item("readme.txt", OLD),
+                item(referencedContent, OLD),
+                item(orphanedContent, OLD));
+        when(minioClient.listObjects(any())).thenReturn(listing);
+        when(minioClient.removeObjects(any())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("update users set profile_image_object_name = null where user_id = 3");
+        outboxRepository.deleteAll();
+        imageObjectRepository.deleteAll();
+    }
+
+    @Test
+    void dryRunCountsOrphansWithoutDeletingThem() throws Exception {
+        OrphanImageReaper.ReapResult result = reaper(true).reap();
+
+        assertThat(result).isEqualTo(new OrphanImageReaper.ReapResult(6, 2, 0, 0, true));
+        verify(minioClient, never()).removeObjects(any());
+        verify(minioClient, never()).removeObject(any());
+    }
+
+    @Test
+    void runDeletesOnlyUnreferencedObjectsPastTheGracePeriod() throws Exception {
+        OrphanImageReaper.ReapResult result = reaper(false).reap();
+
+        assertThat(result).isEqualTo(new OrphanImageReaper.ReapResult(6, 2, 2, 0, false));
+        ArgumentCaptor<RemoveObjectsArgs> userObjects = ArgumentCaptor.forClass(RemoveObjectsArgs.class);
+        verify(minioClient).removeObjects(userObjects.capture());
+        assertThat(userObjects.getValue().objects()).extracting("name").containsExactly("user-3-old.jpg");
+        ArgumentCaptor<RemoveObjectArgs> contentObject = ArgumentCaptor.forClass(RemoveObjectArgs.class);
+        verify(minioClient).removeObject(contentObject.capture());
+        assertThat(contentObject.getValue().object()).isEqualTo(orphanedContent);
+        assertThat(imageObjectRepository.findById(referencedContent).orElseThrow().getRefCount()).isEqualTo(1);
+    }
+
+    @Test
+    void deletesStopAtTheLimitPerRun() {
+        OrphanImageReaper.ReapResult result = reaper(false, 1).reap();
+
+        assertThat(result.orphaned()).isEqualTo(1);
+        assertThat(result.deleted()).isEqualTo(1);
+    }
+
+    @Test
+    void contentWhoseObjectsExceedTheRemainingBudgetIsLeftForTheNextRun() throws Exception {
+        String prefix = orphanedContent.substring(0, orphanedContent.lastIndexOf('.'));
+        List<Result<Item>> listing = List.of(
+                item("user-3-old.jpg", OLD),
+                item(orphanedContent, OLD),
+                item(prefix + "-thumb.jpg", OLD),
+                item(prefix + "-small.jpg", OLD));
+        when(minioClient.listObjects(any())).thenReturn(listing);
+
+        OrphanImageReaper.ReapResult result = reaper(false, 3).reap();
+
+        assertThat(result.orphaned()).isEqualTo(1);
+        assertThat(result.deleted()).isEqualTo(1);
+        verify(minioClient, never()).removeObject(any());
+    }
+
+    private OrphanImageReaper reaper(boolean dryRun) {
+        return reaper(dryRun, 10_000);
+    }
+
+    // A grace period of an hour, no pacing
+    private OrphanImageReaper reaper(boolean dryRun, int maxDeletesPerRun) {
+        return new OrphanImageReaper(minioClient, minioMetrics, userRepository, imageObjectRepository, imageStore,
+                new SimpleMeterRegistry(), true, BUCKET, 1000, Duration.ofHours(1), 0, maxDeletesPerRun, dryRun);
+    }
+
+    private static Result<Item> item(String objectName, ZonedDateTime lastModified) {
+        Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(objectName);
+        when(item.lastModified()).thenReturn(lastModified);
+        return new Result<>(item);
+    }
+
+    private static String contentName() {
+        byte[] digest = new byte[32];
+        new SecureRandom().nextBytes(digest);
+        return "sha256-" + HexFormat.of().formatHex(digest) + ".jpg";
+    }
+}
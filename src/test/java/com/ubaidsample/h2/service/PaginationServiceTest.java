@@ -0,0 +1,113 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.request.PageRequestDTO;
+import com.ubaidsample.h2.dto.response.PageResponseDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.exception.InvalidFilterException;
+import com.ubaidsample.h2.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Keyset pages over the seeded users, whose postal codes and dates of leaving repeat
+@SpringBootTest
+class PaginationServiceTest {
+
+    @Autowired
+    private PaginationService<User, UserResponseDTO> userPaginationService;
+
+    @Autowired
+    private UserRepository repository;
+
+    @Test
+    void cursorPagesVisitEveryUserOnceWhenSortValuesTie() {
+        Comparator<User> byPostalCode = Comparator.comparing(User::getPostalCode).thenComparing(User::getUserId);
+
+        assertThat(walkCursorPages("postalCode", "asc"))
+                .containsExactlyElementsOf(userIds(byPostalCode));
+        assertThat(walkCursorPages("postalCode", "desc"))
+                .containsExactlyElementsOf(userIds(byPostalCode.reversed()));
+        assertThat(walkCursorPages("dateOfLeaving", "asc"))
+                .containsExactlyElementsOf(userIds(Comparator.comparing(User::getDateOfLeaving)
+                        .thenComparing(User::getUserId)));
+    }
+
+    @Test
+    void rejectsCursorIssuedForAnotherSortField() {
+        PageResponseDTO<UserResponseDTO> first = userPaginationService.getPaginatedData(cursorRequest("postalCode", "asc", null));
+
+        assertThat(first.getNextCursor()).isNotNull();
+        assertThatThrownBy(() -> userPaginationService.getPaginatedData(
+                cursorRequest("dateOfLeaving", "asc", first.getNextCursor())))
+                .isInstanceOf(InvalidFilterException.class)
+                .hasMessageContaining("postalCode");
+    }
+
+    @Test
+    void rejectsPageSizeBelowOne() {
+        PageRequestDTO cursor = cursorRequest("postalCode", "asc", null);
+        cursor.setSize(0);
+        PageRequestDTO offset = new PageRequestDTO();
+        offset.setSize(-1);
+
+        assertThatThrownBy(() -> userPaginationService.getPaginatedData(cursor)).isInstanceOf(InvalidFilterException.class);
+        assertThatThrownBy(() -> userPaginationService.getPaginatedData(offset)).isInstanceOf(InvalidFilterException.class);
+        assertThatThrownBy(() -> userPaginationService.validate(cursor)).isInstanceOf(InvalidFilterException.class);
+    }
+
+    @Test
+    void approximateTotalOfAPagePastTheEndIsNotThePageOffset() {
+        long users = repository.count();
+        PageRequestDTO request = new PageRequestDTO();
+        request.setApproximateTotal(true);
+        request.setSize(2);
+        request.setPage(100);
+
+        PageResponseDTO<UserResponseDTO> page = userPaginationService.getPaginatedData(request);
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isEqualTo(users);
+        assertThat(page.getTotalPages()).isEqualTo((int) Math.ceil(users / 2.0));
+    }
+
+    private List<Long> walkCursorPages(String sortBy, String sortDir) {
+        List<Long> ids = new ArrayList<>();
+        String after = null;
+        do {
+            PageResponseDTO<UserResponseDTO> page = userPaginationService.getPaginatedData(cursorRequest(sortBy, sortDir, after));
+            page.getContent().forEach(user -> ids.add(user.getUserId()));
+            assertThat(page.isHasNext()).isEqualTo(page.getNextCursor() != null);
+            after = page.getNextCursor();
+        } while (after != null);
+        return ids;
+    }
+
+    private List<Long> userIds(Comparator<User> order) {
+        return repository.findAll().stream().sorted(order).map(User::getUserId).toList();
+    }
+
+    private static PageRequestDTO cursorRequest(String sortBy, String sortDir, String after) {
+        PageRequestDTO request = new PageRequestDTO();
+        request.setCursor(true);
+        request.setSize(2);
+        request.setSortBy(sortBy);
+        request.setSortDir(sortDir);
+        request.setAfter(after);
+        return request;
+    }
+}
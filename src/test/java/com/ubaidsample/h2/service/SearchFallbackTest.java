@@ -0,0 +1,49 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.request.PageRequestDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.repository.UserRepository;
+import com.ubaidsample.h2.util.InvertedIndex;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// With the index off every search runs as LIKE, and has to find what the index would
+@SpringBootTest(properties = "app.search.full-text.enabled=false")
+class SearchFallbackTest {
+
+    @Autowired
+    private PaginationService<User, UserResponseDTO> userPaginationService;
+
+    @Autowired
+    private UserRepository repository;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"john", "JOHN DOE", "jo do", "mail", "ohn", "example com", "exam", "@@", "56001"})
+    void likeFallbackMatchesLikeTheIndex(String search) {
+        InvertedIndex<Long> index = new InvertedIndex<>();
+        repository.findAll().forEach(user -> index.index(user.getUserId(), List.of(user.getUserName(), user.getEmail())));
+        PageRequestDTO request = new PageRequestDTO();
+        request.setSearch(search);
+        request.setSize(1000);
+
+        List<Long> found = userPaginationService.getPaginatedData(request).getContent().stream()
+                .map(UserResponseDTO::getUserId)
+                .toList();
+
+        assertThat(found).containsExactlyInAnyOrderElementsOf(index.search(search));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.request.PageRequestDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.entity.SearchIndexInstance;
+import com.ubaidsample.h2.entity.User;
+import com.ubaidsample.h2.repository.SearchIndexInstanceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A second instance is a heartbeat row of another id, and its writes are made past this instance's listener
+@SpringBootTest(properties = "app.search.full-text.instance-check=true")
+class SearchIndexInstanceCheckTest {
+
+    private static final String OTHER_INSTANCE = "other-instance";
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Autowired
+    private SearchIndexInstanceRepository instanceRepository;
+
+    @Autowired
+    private PaginationService<User, UserResponseDTO> userPaginationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        instanceRepository.deleteById(OTHER_INSTANCE);
+        jdbcTemplate.update("update users set user_name = 'robert.smith' where user_id = 3");
+        searchIndex.heartbeat();
+        searchIndex.rebuild();
+    }
+
+    @Test
+    void searchesFallBackToLikeWhileAnotherInstanceIsAliveAndTheIndexCatchesUpAfter() {
+        searchIndex.heartbeat();
+        assertThat(searchIndex.search("alice")).containsExactly(2L);
+
+        instanceRepository.save(new SearchIndexInstance(OTHER_INSTANCE, LocalDateTime.now()));
+        searchIndex.heartbeat();
+        jdbcTemplate.update("update users set user_name = 'zebra.crossing' where user_id = 3");
+
+        assertThat(searchIndex.search("alice")).isNull();
+        // The other instance's write is found through LIKE
+        assertThat(search("zebra")).containsExactly(3L);
+
+        instanceRepository.deleteById(OTHER_INSTANCE);
+        searchIndex.heartbeat();
+
+        assertThat(searchIndex.search("zebra")).containsExactly(3L);
+        assertThat(searchIndex.search("smith")).isEmpty();
+    }
+
+    @Test
+    void instanceThatStoppedSendingHeartbeatsIsNotCounted() {
+        instanceRepository.save(new SearchIndexInstance(OTHER_INSTANCE, LocalDateTime.now().minusMinutes(1)));
+
+        searchIndex.heartbeat();
+
+        assertThat(searchIndex.search("alice")).containsExactly(2L);
+        assertThat(instanceRepository.existsById(OTHER_INSTANCE)).isFalse();
+    }
+
+    private List<Long> search(String search) {
+        PageRequestDTO request = new PageRequestDTO();
+        request.setSearch(search);
+        return userPaginationService.getPaginatedData(request).getContent().stream()
+                .map(UserResponseDTO::getUserId)
+                .toList();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.entity.ImageOutboxEntry;
+import com.ubaidsample.h2.repository.ImageObjectRepository;
+import com.ubaidsample.h2.repository.ImageOutboxRepository;
+import com.ubaidsample.h2.repository.UserRepository;
+import com.ubaidsample.h2.util.LimitedInputStream;
+import io.minio.CopyObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// With renditions off nothing needs the whole image, so the streaming upload must not hold the body to hash it
+@SpringBootTest(properties = "app.image.renditions.enabled=false")
+class StreamingImageUploadTest {
+
+    private static final long USER_ID = 4L;
+    private static final String PNG = "image/png";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageObjectRepository imageObjectRepository;
+
+    @Autowired
+    private ImageOutboxRepository outboxRepository;
+
+    @MockitoBean
+    private MinioClient minioClient;
+
+    private final byte[] image = noisePng(160, 160);
+    private LimitedInputStream body;
+    private long bodyReadBeforePut = -1;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(minioClient.getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class))).thenReturn("http://minio/image");
+        doAnswer(invocation -> {
+            if (bodyReadBeforePut < 0) {
+                bodyReadBeforePut = body.getCount();
+            }
+            invocation.<PutObjectArgs>getArgument(0).stream().readAllBytes();
+            return null;
+        }).when(minioClient).putObject(any(PutObjectArgs.class));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        outboxRepository.deleteAll();
+        imageObjectRepository.deleteAll();
+    }
+
+    @Test
+    void bodyStreamsIntoATemporaryObjectThatIsCopiedToTheDigestName() throws Exception {
+        upload();
+
+        // The put started with little more than the header read, the rest was still on the wire
+        assertThat(bodyReadBeforePut).isLessThan(image.length / 2);
+        assertThat(body.getCount()).isEqualTo(image.length);
+        String objectName = "sha256-" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(image)) + ".png";
+        ArgumentCaptor<PutObjectArgs> put = ArgumentCaptor.forClass(PutObjectArgs.class);
+        ArgumentCaptor<CopyObjectArgs> copy = ArgumentCaptor.forClass(CopyObjectArgs.class);
+        verify(minioClient).putObject(put.capture());
+        verify(minioClient).copyObject(copy.capture());
+        assertThat(copy.getValue().object()).isEqualTo(objectName);
+        assertThat(copy.getValue().source().object()).isEqualTo(put.getValue().object());
+        assertThat(userRepository.findById(USER_ID).orElseThrow().getProfileImageObjectName()).isEqualTo(objectName);
+        assertThat(imageObjectRepository.findById(objectName).orElseThrow().getSizeBytes()).isEqualTo(image.length);
+        // The temporary object is removed right away
+        assertThat(outboxRepository.findAll())
+                .filteredOn(entry -> entry.getOperation() == ImageOutboxEntry.Operation.DELETE)
+                .singleElement()
+                .satisfies(entry -> assertThat(entry.getObjectName()).isEqualTo(put.getValue().object()));
+    }
+
+    @Test
+    void contentThatIsAlreadyStoredIsNotCopiedAgain() throws Exception {
+        upload();
+        upload();
+
+        verify(minioClient, times(2)).putObject(any(PutObjectArgs.class));
+        verify(minioClient, times(1)).copyObject(any(CopyObjectArgs.class));
+    }
+
+    private void upload() throws IOException {
+        body = new LimitedInputStream(new ByteArrayInputStream(image), Long.MAX_VALUE);
+        bodyReadBeforePut = -1;
+        userService.uploadProfileImage(USER_ID, body, PNG, image.length, "avatar.png");
+    }
+
+    private static byte[] noisePng(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+}
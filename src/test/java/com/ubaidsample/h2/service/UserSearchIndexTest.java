@@ -0,0 +1,106 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.repository.SearchIndexInstanceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Rebuilds over a table whose rows change while they are read, as commits land between the query and the swap
+class UserSearchIndexTest {
+
+    @SuppressWarnings("unchecked")
+    private final TypedQuery<Object[]> query = mock(TypedQuery.class);
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final UserSearchIndex searchIndex = new UserSearchIndex(entityManager,
+            mock(SearchIndexInstanceRepository.class), mock(PlatformTransactionManager.class),
+            new SimpleMeterRegistry(), true, 1000, 10000, false, Duration.ofSeconds(5));
+
+    @BeforeEach
+    void setUp() {
+        when(entityManager.createQuery(anyString(), eq(Object[].class))).thenReturn(query);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.setMaxResults(anyInt())).thenReturn(query);
+        table(() -> rows(row(1L, "alice.old", "alice@example.com"), row(2L, "bob.gone", "bob@example.com")));
+        searchIndex.rebuild();
+    }
+
+    @Test
+    void updateCommittedAfterTheRowWasReadSurvivesTheRebuild() {
+        table(() -> {
+            List<Object[]> read = rows(row(1L, "alice.old", "alice@example.com"), row(2L, "bob.gone", "bob@example.com"));
+            // Committed after the query saw the old row, its listener runs while the rebuild still indexes
+            searchIndex.index(1L, List.of("alice.new", "alice@example.com"));
+            return read;
+        });
+
+        searchIndex.rebuild();
+
+        assertThat(searchIndex.search("new")).containsExactly(1L);
+        assertThat(searchIndex.search("old")).isEmpty();
+    }
+
+    @Test
+    void removalCommittedAfterTheRowWasReadSurvivesTheRebuild() {
+        table(() -> {
+            List<Object[]> read = rows(row(1L, "alice.old", "alice@example.com"), row(2L, "bob.gone", "bob@example.com"));
+            searchIndex.remove(2L);
+            return read;
+        });
+
+        searchIndex.rebuild();
+
+        assertThat(searchIndex.search("bob")).isEmpty();
+        assertThat(searchIndex.search("alice")).containsExactly(1L);
+    }
+
+    @Test
+    void searchesAnswerFromTheCurrentIndexWhileARebuildReads() {
+        List<Object> duringRebuild = new ArrayList<>();
+        table(() -> {
+            duringRebuild.add(searchIndex.search("alice"));
+            return rows(row(1L, "carol.next", "carol@example.com"));
+        });
+
+        searchIndex.rebuild();
+
+        assertThat(duringRebuild).containsExactly(Set.of(1L));
+        assertThat(searchIndex.search("carol")).containsExactly(1L);
+        assertThat(searchIndex.search("alice")).isEmpty();
+    }
+
+    private void table(Supplier<List<Object[]>> rows) {
+        when(query.getResultList()).thenAnswer(invocation -> rows.get());
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return List.of(rows);
+    }
+
+    private static Object[] row(Long userId, String userName, String email) {
+        return new Object[]{userId, userName, email};
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.service;
+
+import com.ubaidsample.h2.dto.request.UserRequestDTO;
+import com.ubaidsample.h2.dto.response.UserResponseDTO;
+import com.ubaidsample.h2.exception.ResourceAlreadyExistsException;
+import com.ubaidsample.h2.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+@SpringBootTest
+class UserServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @MockitoSpyBean
+    private UserRepository repository;
+
+    // The lookup misses as if a concurrent request committed the key right after it, the insert then hits the constraint
+    @Test
+    void concurrentDuplicateKeyReturnsTheCommittedUser() {
+        UserRequestDTO request = request("IDEMP-002", "alice.again", "alice.again@example.com");
+        // Later lookups find the row, through a method that is not stubbed
+        doReturn(Optional.empty())
+                .doAnswer(invocation -> repository.findByIdempotencyKeyIn(List.of("IDEMP-002")).stream().findFirst())
+                .when(repository).findByIdempotencyKey("IDEMP-002");
+
+        UserResponseDTO response = userService.save(request);
+
+        assertThat(response.getUserId()).isEqualTo(2L);
+        assertThat(response.getUserName()).isEqualTo("alice.wonder");
+    }
+
+    @Test
+    void duplicateEmailIsRejected() {
+        UserRequestDTO request = request("IDEMP-TEST-EMAIL", "someone.new", "john@example.com");
+
+        assertThatThrownBy(() -> userService.save(request))
+                .isInstanceOf(ResourceAlreadyExistsException.class)
+                .hasMessageContaining("john@example.com");
+        assertThat(repository.findByIdempotencyKey("IDEMP-TEST-EMAIL")).isEmpty();
+    }
+
+    private static UserRequestDTO request(String idempotencyKey, String userName, String email) {
+        UserRequestDTO request = new UserRequestDTO();
+        request.setIdempotencyKey(idempotencyKey);
+        request.setUserName(userName);
+        request.setEmail(email);
+        request.setPassword("Passw0rd!x");
+        request.setDateOfBirth(LocalDate.of(1990, 1, 1));
+        request.setDateOfLeaving(LocalDate.of(2030, 1, 1));
+        request.setPostalCode(12345);
+        return request;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * @author Muhammad Ubaid Ur Raheem Ahmad AKA Shahbaz Haroon
+ * Email: shahbazhrn@gmail.com
+ * Cell: +923002585925
+ * GitHub: https://github.com/ShahbazHaroon
+ */
+
+package com.ubaidsample.h2.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InvertedIndexTest {
+
+    private final InvertedIndex<Long> index = new InvertedIndex<>();
+
+    @BeforeEach
+    void indexUsers() {
+        index.index(1L, List.of("john.doe", "john@gmail.com"));
+        index.index(2L, List.of("jane_doe", "jane@example.com"));
+        index.index(3L, List.of("Johnny Walker", "jw@example.com"));
+    }
+
+    @Test
+    void termMatchesEveryWordItPrefixes() {
+        assertThat(index.search("john")).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(index.search("DOE")).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void termDoesNotMatchInsideAWord() {
+        assertThat(index.search("mail")).isEmpty();
+        assertThat(index.search("ohn")).isEmpty();
+    }
+
+    @Test
+    void everyTermHasToMatch() {
+        assertThat(index.search("john doe")).containsExactly(1L);
+        assertThat(index.search("jane example")).containsExactly(2L);
+        assertThat(index.search("john example")).containsExactly(3L);
+    }
+
+    @Test
+    void queryWithoutTermsMatchesNothing() {
+        assertThat(index.search("  @@ ")).isEmpty();
+    }
+
+    @Test
+    void reindexReplacesTheOldTerms() {
+        index.index(1L, List.of("richard.roe", "richard@example.com"));
+
+        assertThat(index.search("john")).containsExactly(3L);
+        assertThat(index.search("roe")).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void removeDropsTheDocument() {
+        index.remove(2L);
+
+        assertThat(index.search("doe")).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void tokenizeSplitsOnAnyNonAlphanumericCharacter() {
+        assertThat(InvertedIndex.tokenize("José.Ávila+tag@mail-box_1.com"))
+                .containsExactly("josé", "ávila", "tag", "mail", "box", "1", "com");
+        assertThat(InvertedIndex.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    void wordPrefixPatternsMatchAtTheStartOrAfterASeparator() {
+        assertThat(InvertedIndex.wordPrefixPatterns("doe"))
+                .containsExactly("doe%", "% doe%", "%.doe%", "%@doe%", "%\\_doe%", "%-doe%", "%+doe%");
+    }
+}